@@ -1,13 +1,45 @@
+create extension if not exists pg_trgm;
+
 drop table if exists app_setting cascade;
 drop table if exists audit_actor cascade;
 drop table if exists audit_event cascade;
+drop table if exists id_lock cascade;
+drop table if exists job_instance cascade;
+drop table if exists job_step cascade;
+drop table if exists job_partition cascade;
 drop sequence if exists audit_actor_id_seq;
 drop sequence if exists audit_event_id_seq;
+drop sequence if exists job_instance_id_seq;
+drop sequence if exists job_step_id_seq;
+drop sequence if exists job_partition_id_seq;
 
 create table app_setting (id varchar(120) not null, category varchar(60), outline varchar(1300), setting_value varchar(1300) not null, primary key (id));
 
-create sequence audit_actor_id_seq start 10000;
-create table audit_actor (id bigint not null default nextval('audit_actor_id_seq'), actor_id varchar(30) not null, category varchar(30) not null, end_date timestamp(6), error_reason varchar(400), message varchar(400), role_type varchar(30) not null, source varchar(128), start_date timestamp(6) not null, status_type varchar(30) not null, time bigint, primary key (id));
+create sequence audit_actor_id_seq start 10000 increment 50;
+-- partitioned by month of start_date. The monthly partitions are created and dropped by AuditRetention.
+create table audit_actor (id bigint not null default nextval('audit_actor_id_seq'), actor_id varchar(30) not null, category varchar(30) not null, end_date timestamp(6), error_reason varchar(400), message varchar(400), role_type varchar(30) not null, source varchar(128), start_date timestamp(6) not null, status_type varchar(30) not null, time bigint, primary key (id, start_date)) partition by range (start_date);
+create table audit_actor_default partition of audit_actor default;
+create index audit_actor_idx_start_date on audit_actor (start_date, id);
+-- keyword search (LIKE '%keyword%') by trigrams
+create index audit_actor_idx_message on audit_actor using gin (message gin_trgm_ops);
+create index audit_actor_idx_error_reason on audit_actor using gin (error_reason gin_trgm_ops);
+
+create sequence audit_event_id_seq start 10000 increment 50;
+create table audit_event (id bigint not null default nextval('audit_event_id_seq'), category varchar(30), end_date timestamp(6), error_reason varchar(400), message varchar(400), start_date timestamp(6) not null, status_type varchar(30) not null, time bigint, primary key (id, start_date)) partition by range (start_date);
+create table audit_event_default partition of audit_event default;
+create index audit_event_idx_start_date on audit_event (start_date, id);
+create index audit_event_idx_message on audit_event using gin (message gin_trgm_ops);
+create index audit_event_idx_error_reason on audit_event using gin (error_reason gin_trgm_ops);
+
+create table id_lock (id varchar(120) not null, primary key (id));
+
+create sequence job_instance_id_seq start 10000;
+create table job_instance (id bigint not null default nextval('job_instance_id_seq'), job_name varchar(60) not null, job_key varchar(60) not null, status_type smallint not null, error_reason varchar(400), start_date timestamp(6) not null, end_date timestamp(6), primary key (id));
+create index job_instance_idx_name on job_instance (job_name, job_key);
+
+create sequence job_step_id_seq start 10000;
+create table job_step (id bigint not null default nextval('job_step_id_seq'), instance_id bigint not null, step_name varchar(60) not null, last_key varchar(120), processed bigint not null, error_count bigint not null, status_type smallint not null, update_date timestamp(6) not null, primary key (id));
+create index job_step_idx_instance on job_step (instance_id, step_name);
 
-create sequence audit_event_id_seq start 10000;
-create table audit_event (id bigint not null default nextval('audit_event_id_seq'), category varchar(30), end_date timestamp(6), error_reason varchar(400), message varchar(400), start_date timestamp(6) not null, status_type varchar(30) not null, time bigint, primary key (id));
+create sequence job_partition_id_seq start 10000;
+create table job_partition (id bigint not null default nextval('job_partition_id_seq'), job_name varchar(60) not null, job_key varchar(60) not null, partition_no integer not null, range_from varchar(120), range_to varchar(120), status_type smallint not null, owner varchar(60), lease_until timestamp(6), last_key varchar(120), processed bigint not null, error_count bigint not null, update_date timestamp(6) not null, primary key (id), unique (job_name, job_key, partition_no));
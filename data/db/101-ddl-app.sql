@@ -15,10 +15,10 @@ drop sequence if exists holiday_id_seq;
 drop sequence if exists self_fi_account_id_seq;
 drop sequence if exists staff_authority_id_seq;
 
-create sequence cash_balance_id_seq start with 1 increment by 1;
-create sequence cashflow_id_seq start with 1 increment by 1;
-create sequence fi_account_id_seq start with 1 increment by 1;
-create sequence holiday_id_seq start with 1 increment by 1;
+create sequence cash_balance_id_seq start with 1 increment by 50;
+create sequence cashflow_id_seq start with 1 increment by 50;
+create sequence fi_account_id_seq start with 1 increment by 50;
+create sequence holiday_id_seq start with 1 increment by 50;
 create sequence self_fi_account_id_seq start with 1 increment by 1;
 create sequence staff_authority_id_seq start with 1 increment by 1;
 
@@ -32,3 +32,15 @@ create table login (actor_id varchar(30) not null, role_type smallint not null,
 create table self_fi_account (id bigint not null default nextval('self_fi_account_id_seq'), category varchar(30), currency varchar(3), fi_account_id varchar(30), fi_code varchar(30), primary key (id));
 create table staff (staff_id varchar(30) not null, name varchar(30), role_type smallint, primary key (staff_id));
 create table staff_authority (id bigint not null default nextval('staff_authority_id_seq'), authority varchar(30), staff_id varchar(30), primary key (id));
+
+create index cash_balance_idx_account on cash_balance (account_id, currency, base_day);
+create index cashflow_idx_account on cashflow (account_id, currency, value_day);
+create index cashflow_idx_value_day on cashflow (value_day, status_type);
+create index cash_in_out_idx_account on cash_in_out (account_id, currency, withdrawal, status_type);
+create index cash_in_out_idx_event_day on cash_in_out (event_day, status_type);
+create index cash_in_out_idx_update_date on cash_in_out (update_date);
+create index fi_account_idx_account on fi_account (account_id, category, currency);
+create index holiday_idx_day on holiday (category, holiday);
+create index login_idx_login_id on login (role_type, login_id);
+create index self_fi_account_idx_category on self_fi_account (category, currency);
+create index staff_authority_idx_staff on staff_authority (staff_id);
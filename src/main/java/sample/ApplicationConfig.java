@@ -8,6 +8,20 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import sample.context.DomainHelper;
+import sample.context.audit.AuditHandler.AuditPersister;
+import sample.context.audit.AuditWriter;
+import sample.context.lock.IdLockHandler;
+import sample.context.lock.IdLockHandler.DbIdLockHandler;
+import sample.context.lock.IdLockHandler.IdLockHandlerImpl;
+import sample.context.lock.IdLockHandler.MonitoredIdLockHandler;
+import sample.context.lock.IdLockHandler.StripedIdLockHandler;
+import sample.context.lock.IdLockMonitor;
+import sample.context.lock.IdShardExecutor;
+import sample.context.orm.OrmRepository;
+
 /**
  * Represents a bean definition in an application.
  * <p>
@@ -25,4 +39,42 @@ public class ApplicationConfig {
         return new Hibernate6Module();
     }
 
+    @Bean
+    IdLockMonitor idLockMonitor(ApplicationProperties props, MeterRegistry registry) {
+        return new IdLockMonitor(registry, props.getLock().getContentionWindow());
+    }
+
+    @Bean
+    IdLockHandler idLockHandler(
+            ApplicationProperties props, OrmRepository rep, IdLockMonitor monitor) {
+        var lock = props.getLock();
+        IdLockHandler handler;
+        if (lock.isDatabase()) {
+            handler = new DbIdLockHandler(rep, lock.getTimeout());
+        } else if (0 < lock.getStripes()) {
+            handler = new StripedIdLockHandler(lock.getStripes(), lock.getTimeout());
+        } else {
+            handler = new IdLockHandlerImpl(lock.getTimeout());
+        }
+        return new MonitoredIdLockHandler(handler, monitor);
+    }
+
+    @Bean
+    IdShardExecutor idShardExecutor(ApplicationProperties props, MeterRegistry registry) {
+        var shard = props.getShard();
+        return new IdShardExecutor(registry, shard.getShards(), shard.getQueueCapacity(),
+                shard.getBackpressure(), shard.getBlockTimeout());
+    }
+
+    @Bean
+    AuditWriter auditWriter(
+            ApplicationProperties props, AuditPersister persister, DomainHelper dh, MeterRegistry registry) {
+        var audit = props.getAudit();
+        if (!audit.isAsync()) {
+            return new AuditWriter(persister, dh, registry);
+        }
+        return new AuditWriter(persister, dh, registry, audit.getQueueCapacity(), audit.getBatchSize(),
+                audit.getOverflow(), audit.getBlockTimeout(), audit.getLongRunning());
+    }
+
 }
@@ -1,12 +1,30 @@
 package sample;
 
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
 import sample.context.DomainHelper;
 import sample.context.orm.OrmInterceptor;
+import sample.context.orm.OrmQueryMetrics;
 import sample.context.orm.OrmRepository;
+import sample.context.orm.ReplicaRoutingDataSource;
 
 /**
  * Represents a database connection definition for an application.
@@ -14,10 +32,51 @@ import sample.context.orm.OrmRepository;
 @Configuration
 public class ApplicationDbConfig {
 
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties props) {
+        return props.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Routes read-only transactions to the replicas. (the primary only, without them)
+     * <p>
+     * The replica pools take the same spring.datasource.hikari settings as the primary.
+     */
+    @Bean
+    @Primary
+    ReplicaRoutingDataSource dataSource(
+            HikariDataSource primaryDataSource, DataSourceProperties dsProps,
+            ApplicationProperties props, MeterRegistry registry, Environment env) {
+        var replica = props.getReplica();
+        List<String> urls = replica.getUrls().stream().filter(StringUtils::isNotBlank).toList();
+        List<DataSource> replicas = IntStream.range(0, urls.size())
+                .mapToObj(i -> (DataSource) replicaDataSource(dsProps, env, urls.get(i), i + 1))
+                .toList();
+        return new ReplicaRoutingDataSource(
+                primaryDataSource, replicas, replica.getReadYourWrites(), replica.getRetryInterval(), registry);
+    }
+
+    private HikariDataSource replicaDataSource(DataSourceProperties dsProps, Environment env, String url, int no) {
+        HikariDataSource ds = dsProps.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(env).bind("spring.datasource.hikari", Bindable.ofInstance(ds));
+        ds.setJdbcUrl(url);
+        if (ds.getPoolName() != null) {
+            ds.setPoolName(ds.getPoolName() + "-replica" + no);
+        }
+        return ds;
+    }
+
     @Bean
     @Primary
     OrmRepository defaultRepository(DomainHelper dh, OrmInterceptor interceptor) {
         return OrmRepository.of(dh, interceptor);
     }
 
+    /** Exposes the JPQL shape cache and the query plan cache. */
+    @Bean
+    OrmQueryMetrics ormQueryMetrics(EntityManagerFactory emf) {
+        return new OrmQueryMetrics(emf.unwrap(SessionFactory.class));
+    }
+
 }
@@ -1,8 +1,14 @@
 package sample;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import lombok.Data;
+import sample.context.audit.AuditWriter.Overflow;
+import sample.context.lock.IdShardExecutor.Backpressure;
 
 /**
  * Represents the property concept of the application.
@@ -12,10 +18,119 @@ import lombok.Data;
 public class ApplicationProperties {
     private boolean cors;
     private MailProps mail;
+    private LockProps lock = new LockProps();
+    private ShardProps shard = new ShardProps();
+    private BatchProps batch = new BatchProps();
+    private ReplicaProps replica = new ReplicaProps();
+    private AuditProps audit = new AuditProps();
 
     @Data
     public static class MailProps {
         private boolean enabled;
     }
 
+    @Data
+    public static class LockProps {
+        /**
+         * Number of lock stripes for the ID lock.
+         * When 0, a lock is kept per ID only while it is in use.
+         */
+        private int stripes = 0;
+        /**
+         * When true, the ID lock is taken on the DB lock table so that it is
+         * shared by every node using the same database.
+         */
+        private boolean database = false;
+        /**
+         * Default time to wait for an ID lock.
+         * When not set, the lock is waited for indefinitely.
+         */
+        private Duration timeout;
+        /** Sliding window for listing the most contended IDs. */
+        private Duration contentionWindow = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class ShardProps {
+        /**
+         * Number of single-threaded shards running account-scoped updates.
+         * When 0, updates run in the request thread under the ID lock.
+         */
+        private int shards = 0;
+        /** Tasks that may wait per shard. */
+        private int queueCapacity = 1000;
+        /** Behavior when the queue of a shard is full. */
+        private Backpressure backpressure = Backpressure.ABORT;
+        /** Time to wait for the queue with BLOCK. */
+        private Duration blockTimeout = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class BatchProps {
+        /** Rows read per page. Only one page is kept in memory at a time. */
+        private int pageSize = 1000;
+        /** Rows committed per transaction. */
+        private int chunkSize = 100;
+        /** Threads processing account groups in parallel. */
+        private int workers = 4;
+        /**
+         * Partitions the end-of-day jobs are split into, so that every node running
+         * the job shares them. When 0, the job runs as a whole on one node.
+         */
+        private int partitions = 0;
+        /** Time a node holds a partition without a heartbeat. */
+        private Duration lease = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class ReplicaProps {
+        /**
+         * JDBC URLs of the replica databases read by read-only transactions.
+         * (the user and password are those of the primary) When empty, every
+         * transaction uses the primary.
+         */
+        private List<String> urls = new ArrayList<>();
+        /** Time an actor reads from the primary after a write. */
+        private Duration readYourWrites = Duration.ofSeconds(5);
+        /** Time a replica that failed to connect is left out. */
+        private Duration retryInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class AuditProps {
+        /**
+         * When true, the audit logs are written in batches by a background thread.
+         * When false, each start and end is committed in the audited thread.
+         */
+        private boolean async = true;
+        /** Audit records that may wait to be written. */
+        private int queueCapacity = 10000;
+        /** Audit records written per transaction. */
+        private int batchSize = 100;
+        /** Behavior when the queue is full. (records are lost with DROP) */
+        private Overflow overflow = Overflow.BLOCK;
+        /** Time to wait for the queue with BLOCK before dropping. When not set, it waits without limit. */
+        private Duration blockTimeout;
+        /**
+         * Time a start is held before it is written as PROCESSING, so that a log
+         * ending earlier is written once at its end. When not set, the start is
+         * written at once. (asynchronous only)
+         */
+        private Duration longRunning;
+        /**
+         * Time the audit logs are kept, counted in days. Older logs are neither
+         * searched nor kept by the retention job. When not set, they are kept
+         * forever.
+         */
+        private Duration retention;
+        /** Cron of the retention job. ("-" to disable) */
+        private String retentionCron = "0 0 3 * * *";
+        /** Months of partitions created in advance on PostgreSQL. */
+        private int partitionsAhead = 3;
+        /** Logs deleted per transaction when purged by rows. */
+        private int purgeChunkSize = 1000;
+        /** Pause between the chunks of a purge. */
+        private Duration purgeInterval = Duration.ofMillis(100);
+    }
+
 }
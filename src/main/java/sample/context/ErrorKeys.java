@@ -10,6 +10,10 @@ public interface ErrorKeys {
     String EntityNotFound = Prefix + "EntityNotFoundException";
     /** Subject information has been updated by other users. */
     String OptimisticLockingFailure = Prefix + "OptimisticLockingFailure";
+    /** Subject information is being processed by another request. */
+    String LockTimeout = Prefix + "LockTimeout";
+    /** The server is busy. */
+    String Busy = Prefix + "Busy";
     /** Login failed. */
     String Login = Prefix + "Login";
     /** Authentication failed. */
@@ -18,6 +22,8 @@ public interface ErrorKeys {
     String AuthenticationInvalid = Prefix + "AuthenticationInvalid";
     /** The use of the subject feature is not permitted. */
     String AccessDenied = Prefix + "AccessDeniedException";
+    /** The cursor is no longer valid. */
+    String Cursor = Prefix + "Cursor";
     /** An unsupported feature was invoked. */
     String UnsupportedOperation = Prefix + "UnsupportedOperation";
 
@@ -3,28 +3,31 @@ package sample.context.audit;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Data;
 import sample.context.ActionStatusType;
-import sample.context.DomainEntity;
 import sample.context.Dto;
 import sample.context.actor.Actor;
 import sample.context.actor.type.ActorRoleType;
 import sample.context.orm.JpqlBuilder;
+import sample.context.orm.Keyset;
 import sample.context.orm.OrmMatchMode;
 import sample.context.orm.OrmRepository;
 import sample.model.constraints.Category;
@@ -40,13 +43,14 @@ import sample.util.DateUtils;
  * Represents the audit log of application users.
  */
 @Entity
+@Table(indexes = @Index(name = "audit_actor_idx_start_date", columnList = "startDate, id"))
 @Data
-public class AuditActor implements DomainEntity {
+public class AuditActor implements AuditLog {
     private static final String SequenceId = "audit_actor_id_seq";
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long id;
     @IdStr
     private String actorId;
@@ -71,46 +75,64 @@ public class AuditActor implements DomainEntity {
 
     /** User audit log is set to PROCESSED status. */
     public AuditActor finish(final OrmRepository rep) {
-        if (Actor.ANONYMOUS.id().equals(this.actorId)) {
-            setActorId(rep.dh().actor().id());
-        }
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.PROCESSED);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.PROCESSED, null, now));
     }
 
     /** User audit log is set to CANCELLED status. */
     public AuditActor cancel(final OrmRepository rep, String errorReason) {
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.CANCELLED);
-        setErrorReason(StringUtils.abbreviate(errorReason, 250));
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.CANCELLED, errorReason, now));
     }
 
     /** Set the user audit log to ERROR status. */
     public AuditActor error(final OrmRepository rep, String errorReason) {
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.ERROR);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.ERROR, errorReason, now));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AuditActor end(Actor actor, ActionStatusType statusType, String errorReason, LocalDateTime now) {
+        if (Actor.ANONYMOUS.id().equals(this.actorId)) {
+            setActorId(actor.id());
+        }
+        setStatusType(statusType);
         setErrorReason(StringUtils.abbreviate(errorReason, 250));
         setEndDate(now);
         setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return this;
     }
 
-    /** Search user audit logs. */
-    public static Page<AuditActor> find(final OrmRepository rep, final FindAuditActor p) {
+    /**
+     * Search user audit logs.
+     * <p>
+     * With a cursor (blank for the first page), the logs are read by keyset in
+     * startDate and id order, which stays fast on deep pages. Otherwise they are
+     * read by page number, without the total count when count is false.
+     * <p>
+     * The keyword is matched anywhere in message and errorReason. On PostgreSQL
+     * the trigram indexes of the columns serve the match.
+     * low: A keyword shorter than 3 characters has no trigram and scans the
+     * logs within the date range.
+     */
+    public static Slice<AuditActor> find(final OrmRepository rep, final FindAuditActor p) {
         var jpql = JpqlBuilder.of("SELECT aa FROM AuditActor aa")
                 .like(Arrays.asList("aa.actorId", "aa.source"), p.actorId, OrmMatchMode.ANYWHERE)
                 .equal("aa.category", p.category)
                 .in("aa.roleType", p.roleTypes)
                 .equal("aa.statusType", p.statusType)
                 .like(Arrays.asList("aa.message", "aa.errorReason"), p.keyword, OrmMatchMode.ANYWHERE)
-                .between("aa.startDate", p.fromDate, p.toDate)
-                .orderBy("aa.startDate DESC");
+                .between("aa.startDate", AuditRetention.searchFrom(rep.dh(), p.fromDate), p.toDate);
+        if (p.cursor != null) {
+            jpql.seek("aa.startDate", "aa.id", true, Keyset.decode(p.cursor, LocalDateTime::parse).orElse(null));
+            return rep.tmpl().findKeyset(jpql.build(), p.pageable().getPageSize(),
+                    (AuditActor v) -> new Keyset(v.getStartDate(), v.getId()), jpql.args());
+        }
+        jpql.orderBy("aa.startDate DESC");
+        if (Boolean.FALSE.equals(p.count)) {
+            return rep.tmpl().findSlice(jpql.build(), p.pageable(), jpql.args());
+        }
         return rep.tmpl().find(jpql.build(), p.pageable(), jpql.args());
     }
 
@@ -125,7 +147,9 @@ public class AuditActor implements DomainEntity {
             @ISODateTime LocalDateTime fromDate,
             @ISODateTime LocalDateTime toDate,
             Integer size,
-            Integer page) {
+            Integer page,
+            String cursor,
+            Boolean count) {
         public Pageable pageable() {
             return PageRequest.of(
                     page == null ? 0 : page,
@@ -168,9 +192,24 @@ public class AuditActor implements DomainEntity {
         }
     }
 
-    public static void purge(final OrmRepository rep, LocalDate expiredDay) {
-        var jpql = "DELETE FROM AuditActor aa WHERE aa.startDate <= ?1";
-        rep.tmpl().execute(jpql, expiredDay.atStartOfDay());
+    /**
+     * Deletes the logs started before the expired day, at most limit logs in
+     * startDate and id order after the position. (from the oldest when null)
+     * <p>
+     * Returns the positions of the deleted logs, so that the next chunk seeks
+     * after the last one instead of scanning the deleted rows again.
+     */
+    public static List<Keyset> purge(final OrmRepository rep, LocalDate expiredDay, Keyset after, int limit) {
+        LocalDateTime expired = expiredDay.atStartOfDay();
+        var jpql = JpqlBuilder.of("SELECT aa.startDate, aa.id FROM AuditActor aa", "aa.startDate < ?1", 2, expired)
+                .seek("aa.startDate", "aa.id", false, after);
+        List<Object[]> keys = rep.tmpl().findFirst(jpql.build(), limit, jpql.args());
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = keys.stream().map(v -> (Long) v[1]).toList();
+        rep.tmpl().execute("DELETE FROM AuditActor aa WHERE aa.id IN ?1 AND aa.startDate < ?2", ids, expired);
+        return keys.stream().map(v -> new Keyset(v[0], (Long) v[1])).toList();
     }
 
 }
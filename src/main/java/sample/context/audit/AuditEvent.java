@@ -3,25 +3,29 @@ package sample.context.audit;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Data;
 import sample.context.ActionStatusType;
-import sample.context.DomainEntity;
 import sample.context.Dto;
+import sample.context.actor.Actor;
 import sample.context.orm.JpqlBuilder;
+import sample.context.orm.Keyset;
 import sample.context.orm.OrmMatchMode;
 import sample.context.orm.OrmRepository;
 import sample.model.constraints.DescriptionEmpty;
@@ -33,13 +37,14 @@ import sample.util.DateUtils;
  * Represents the audit log of system events.
  */
 @Entity
+@Table(indexes = @Index(name = "audit_event_idx_start_date", columnList = "startDate, id"))
 @Data
-public class AuditEvent implements DomainEntity {
+public class AuditEvent implements AuditLog {
     private static final String SequenceId = "audit_event_id_seq";
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long id;
     private String category;
     private String message;
@@ -56,40 +61,58 @@ public class AuditEvent implements DomainEntity {
     /** Event audit log is set to PROCESSED status. */
     public AuditEvent finish(final OrmRepository rep) {
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.PROCESSED);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.PROCESSED, null, now));
     }
 
     /** Event audit log is set to CANCELLED status. */
     public AuditEvent cancel(final OrmRepository rep, String errorReason) {
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.CANCELLED);
-        setErrorReason(StringUtils.abbreviate(errorReason, 250));
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.CANCELLED, errorReason, now));
     }
 
     /** Set the event audit log to ERROR status. */
     public AuditEvent error(final OrmRepository rep, String errorReason) {
         LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.ERROR);
+        return rep.update(end(rep.dh().actor(), ActionStatusType.ERROR, errorReason, now));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AuditEvent end(Actor actor, ActionStatusType statusType, String errorReason, LocalDateTime now) {
+        setStatusType(statusType);
         setErrorReason(StringUtils.abbreviate(errorReason, 250));
         setEndDate(now);
         setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return rep.update(this);
+        return this;
     }
 
-    /** Search the event audit log. */
-    public static Page<AuditEvent> find(final OrmRepository rep, final FindAuditEvent p) {
+    /**
+     * Search the event audit log.
+     * <p>
+     * With a cursor (blank for the first page), the logs are read by keyset in
+     * startDate and id order, which stays fast on deep pages. Otherwise they are
+     * read by page number, without the total count when count is false.
+     * <p>
+     * The keyword is matched anywhere in message and errorReason. On PostgreSQL
+     * the trigram indexes of the columns serve the match.
+     * low: A keyword shorter than 3 characters has no trigram and scans the
+     * logs within the date range.
+     */
+    public static Slice<AuditEvent> find(final OrmRepository rep, final FindAuditEvent p) {
         JpqlBuilder jpql = JpqlBuilder.of("SELECT ae FROM AuditEvent ae")
                 .equal("ae.category", p.category)
                 .equal("ae.statusType", p.statusType)
                 .like(Arrays.asList("ae.message", "ae.errorReason"), p.keyword, OrmMatchMode.ANYWHERE)
-                .between("ae.startDate", p.fromDate, p.toDate)
-                .orderBy("ae.startDate DESC");
+                .between("ae.startDate", AuditRetention.searchFrom(rep.dh(), p.fromDate), p.toDate);
+        if (p.cursor != null) {
+            jpql.seek("ae.startDate", "ae.id", true, Keyset.decode(p.cursor, LocalDateTime::parse).orElse(null));
+            return rep.tmpl().findKeyset(jpql.build(), p.pageable().getPageSize(),
+                    (AuditEvent v) -> new Keyset(v.getStartDate(), v.getId()), jpql.args());
+        }
+        jpql.orderBy("ae.startDate DESC");
+        if (Boolean.FALSE.equals(p.count)) {
+            return rep.tmpl().findSlice(jpql.build(), p.pageable(), jpql.args());
+        }
         return rep.tmpl().find(jpql.build(), p.pageable(), jpql.args());
     }
 
@@ -102,7 +125,9 @@ public class AuditEvent implements DomainEntity {
             @ISODateTime LocalDateTime fromDate,
             @ISODateTime LocalDateTime toDate,
             Integer size,
-            Integer page) {
+            Integer page,
+            String cursor,
+            Boolean count) {
         public Pageable pageable() {
             return PageRequest.of(
                     page == null ? 0 : page,
@@ -142,9 +167,24 @@ public class AuditEvent implements DomainEntity {
         }
     }
 
-    public static void purge(final OrmRepository rep, LocalDate expiredDay) {
-        var jpql = "DELETE FROM AuditActor aa WHERE aa.startDate <= ?1";
-        rep.tmpl().execute(jpql, expiredDay.atStartOfDay());
+    /**
+     * Deletes the logs started before the expired day, at most limit logs in
+     * startDate and id order after the position. (from the oldest when null)
+     * <p>
+     * Returns the positions of the deleted logs, so that the next chunk seeks
+     * after the last one instead of scanning the deleted rows again.
+     */
+    public static List<Keyset> purge(final OrmRepository rep, LocalDate expiredDay, Keyset after, int limit) {
+        LocalDateTime expired = expiredDay.atStartOfDay();
+        var jpql = JpqlBuilder.of("SELECT ae.startDate, ae.id FROM AuditEvent ae", "ae.startDate < ?1", 2, expired)
+                .seek("ae.startDate", "ae.id", false, after);
+        List<Object[]> keys = rep.tmpl().findFirst(jpql.build(), limit, jpql.args());
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = keys.stream().map(v -> (Long) v[1]).toList();
+        rep.tmpl().execute("DELETE FROM AuditEvent ae WHERE ae.id IN ?1 AND ae.startDate < ?2", ids, expired);
+        return keys.stream().map(v -> new Keyset(v[0], (Long) v[1])).toList();
     }
 
 }
@@ -1,13 +1,18 @@
 package sample.context.audit;
 
+import java.text.MessageFormat;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -15,6 +20,7 @@ import org.springframework.transaction.annotation.Propagation;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
 import sample.context.ErrorKeys;
 import sample.context.InvocationException;
 import sample.context.ValidationException;
@@ -22,6 +28,7 @@ import sample.context.actor.Actor;
 import sample.context.actor.ActorSession;
 import sample.context.audit.AuditActor.RegAuditActor;
 import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.audit.AuditWriter.Ticket;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
 
@@ -34,7 +41,13 @@ import sample.context.orm.TxTemplate;
  * Target logs are written not only to the Logger but also to the audit table in
  * the system schema.
  * (It is possible to detect no-response conditions by setting separate TXs for
- * start and completion times.)
+ * start and completion times.) The records are written by AuditWriter, in the
+ * background when it is asynchronous. With its long-running threshold, only the
+ * processes still running after the threshold have the start written.
+ * <p>
+ * The audit messages are resolved from the MessageSource once per key and
+ * locale, and kept as compiled MessageFormat.
+ * low: The kept messages are not reloaded along with the MessageSource.
  */
 @Component
 @RequiredArgsConstructor(staticName = "of")
@@ -43,9 +56,12 @@ public class AuditHandler {
     public static final Logger LoggerActor = LoggerFactory.getLogger("Audit.Actor");
     public static final Logger LoggerEvent = LoggerFactory.getLogger("Audit.Event");
     public static final String AUDIT_PREFIX = "audit";
+    /** Message templates kept by the key and the locale. */
+    public static final int MaxTemplates = 1000;
 
     private final MessageSource msg;
-    private final AuditPersister persister;
+    private final AuditWriter writer;
+    private final Map<TemplateKey, Template> templates = new ConcurrentHashMap<>();
 
     /** Audit logs are logged for the given process. */
     public <T> T audit(String message, Supplier<T> callable) {
@@ -77,30 +93,29 @@ public class AuditHandler {
 
     /** Audit logs are recorded for the given process. */
     public <T> T audit(String category, String message, Collection<Object> messageArgs, Supplier<T> callable) {
-        Locale locale = ActorSession.actor().locale();
-        String keyMessage = AUDIT_PREFIX + "." + category + "." + message;
-        String mergeMessage;
-        if (messageArgs == null || messageArgs.isEmpty()) {
-            mergeMessage = msg.getMessage(keyMessage, new Object[0], message, locale);
+        Actor actor = ActorSession.actor();
+        String mergeMessage = template(category, message, actor.locale()).format(messageArgs);
+        Logger logger = logger(actor);
+        if (actor.roleType().isSystem()) {
+            logger.trace("[Start] {}", mergeMessage);
         } else {
-            mergeMessage = msg.getMessage(keyMessage, messageArgs.toArray(), message, locale);
+            logger.trace("[Start] [{}] {}", actor.id(), mergeMessage);
         }
-        logger().trace(message(mergeMessage, "[Start]", null));
         long start = System.currentTimeMillis();
         try {
-            T v = ActorSession.actor().roleType().isSystem()
+            T v = actor.roleType().isSystem()
                     ? callEvent(category, mergeMessage, callable)
                     : callAudit(category, mergeMessage, callable);
-            logger().info(message(mergeMessage, "[Finish]", start));
+            log(logger, Level.INFO, actor, "[Finish]", mergeMessage, start);
             return v;
         } catch (ValidationException e) {
-            logger().warn(message(mergeMessage, "[Warn]", start));
+            log(logger, Level.WARN, actor, "[Warn]", mergeMessage, start);
             throw e;
         } catch (RuntimeException e) {
-            logger().warn(message(mergeMessage, "[Error]", start));
+            log(logger, Level.WARN, actor, "[Error]", mergeMessage, start);
             throw (RuntimeException) e;
         } catch (Exception e) {
-            logger().warn(message(mergeMessage, "[Fatal]", start));
+            log(logger, Level.WARN, actor, "[Fatal]", mergeMessage, start);
             throw InvocationException.of(ErrorKeys.Exception, e);
         }
     }
@@ -118,55 +133,79 @@ public class AuditHandler {
         });
     }
 
-    private Logger logger() {
-        return ActorSession.actor().roleType().isSystem() ? LoggerEvent : LoggerActor;
+    private Logger logger(Actor actor) {
+        return actor.roleType().isSystem() ? LoggerEvent : LoggerActor;
     }
 
-    private String message(String message, String prefix, Long startMillis) {
-        Actor actor = ActorSession.actor();
-        StringBuilder sb = new StringBuilder(prefix + " ");
-        if (actor.roleType().notSystem()) {
-            sb.append("[" + actor.id() + "] ");
+    private void log(Logger logger, Level level, Actor actor, String status, String message, long startMillis) {
+        if (!logger.isEnabledForLevel(level)) {
+            return;
+        }
+        long elapsed = System.currentTimeMillis() - startMillis;
+        if (actor.roleType().isSystem()) {
+            logger.atLevel(level).log("{} {} [{}ms]", status, message, elapsed);
+        } else {
+            logger.atLevel(level).log("{} [{}] {} [{}ms]", status, actor.id(), message, elapsed);
         }
-        sb.append(message);
-        if (startMillis != null) {
-            sb.append(" [" + (System.currentTimeMillis() - startMillis) + "ms]");
+    }
+
+    /**
+     * Returns the template of "audit.{category}.{message}" in the locale, or of
+     * the message itself when the key is not defined.
+     */
+    private Template template(String category, String message, Locale locale) {
+        var key = new TemplateKey(category, message, locale);
+        Template template = templates.get(key);
+        if (template == null) {
+            String pattern = msg.getMessage(AUDIT_PREFIX + "." + category + "." + message, null, message, locale);
+            template = Template.of(pattern, locale);
+            if (templates.size() < MaxTemplates) {
+                templates.put(key, template);
+            }
         }
-        return sb.toString();
+        return template;
     }
 
     public <T> T callAudit(String category, String message, Supplier<T> callable) {
-        Optional<AuditActor> audit = Optional.empty();
+        return call(() -> writer.start(RegAuditActor.of(category, message)), callable);
+    }
+
+    public <T> T callEvent(String category, String message, Supplier<T> callable) {
+        return call(() -> writer.start(RegAuditEvent.of(category, message)), callable);
+    }
+
+    private <T> T call(Supplier<Ticket> start, Supplier<T> callable) {
+        Optional<Ticket> audit = Optional.empty();
         try {
-            try { // Failure of the system schema should not affect the intrinsic errorに
-                audit = Optional.of(persister.start(RegAuditActor.of(category, message)));
+            try { // Failure of the system schema should not affect the intrinsic error
+                audit = Optional.of(start.get());
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
             T v = callable.get();
             try {
-                audit.ifPresent(persister::finish);
+                audit.ifPresent(writer::finish);
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
             return v;
         } catch (ValidationException e) {
             try {
-                audit.ifPresent((v) -> persister.cancel(v, e.getMessage()));
+                audit.ifPresent((v) -> writer.cancel(v, e.getMessage()));
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
             throw e;
         } catch (RuntimeException e) {
             try {
-                audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                audit.ifPresent((v) -> writer.error(v, e.getMessage()));
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
             throw e;
         } catch (Exception e) {
             try {
-                audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                audit.ifPresent((v) -> writer.error(v, e.getMessage()));
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -174,42 +213,27 @@ public class AuditHandler {
         }
     }
 
-    public <T> T callEvent(String category, String message, Supplier<T> callable) {
-        Optional<AuditEvent> audit = Optional.empty();
-        try {
-            try { // Failure of the system schema should not affect the intrinsic error
-                audit = Optional.of(persister.start(RegAuditEvent.of(category, message)));
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            }
-            T v = callable.get();
-            try {
-                audit.ifPresent(persister::finish);
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            }
-            return v;
-        } catch (ValidationException e) {
+    private static record TemplateKey(String category, String message, Locale locale) {
+    }
+
+    /** An audit message compiled once. (format is null when not a valid pattern) */
+    private static record Template(String pattern, MessageFormat format) {
+        static Template of(String pattern, Locale locale) {
             try {
-                audit.ifPresent((v) -> persister.cancel(v, e.getMessage()));
-            } catch (Exception ex) {
-                log.error(ex.getMessage(), ex);
+                return new Template(pattern, new MessageFormat(pattern, locale));
+            } catch (IllegalArgumentException e) {
+                return new Template(pattern, null);
             }
-            throw e;
-        } catch (RuntimeException e) {
-            try {
-                audit.ifPresent((v) -> persister.error(v, e.getMessage()));
-            } catch (Exception ex) {
-                log.error(ex.getMessage(), ex);
+        }
+
+        /** Formats the arguments. (same as MessageSource, the pattern as is without them) */
+        String format(Collection<Object> args) {
+            if (args == null || args.isEmpty() || format == null) {
+                return pattern;
             }
-            throw (RuntimeException) e;
-        } catch (Exception e) {
-            try {
-                audit.ifPresent((v) -> persister.error(v, e.getMessage()));
-            } catch (Exception ex) {
-                log.error(ex.getMessage(), ex);
+            synchronized (format) { // MessageFormat is not thread-safe
+                return format.format(args.toArray());
             }
-            throw new InvocationException(e);
         }
     }
 
@@ -228,45 +252,24 @@ public class AuditHandler {
             });
         }
 
-        public AuditActor finish(final AuditActor audit) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return audit.finish(rep);
-            });
-        }
-
-        public AuditActor cancel(final AuditActor audit, String errorReason) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return audit.cancel(rep, errorReason);
-            });
-        }
-
-        public AuditActor error(final AuditActor audit, String errorReason) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return audit.error(rep, errorReason);
-            });
-        }
-
         public AuditEvent start(final RegAuditEvent p) {
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return AuditEvent.register(rep, p);
             });
         }
 
-        public AuditEvent finish(final AuditEvent event) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return event.finish(rep);
-            });
-        }
-
-        public AuditEvent cancel(final AuditEvent event, String errorReason) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return event.cancel(rep, errorReason);
+        void end(final AuditLog audit, ActionStatusType statusType, String errorReason) {
+            TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                LocalDateTime now = rep.dh().time().date();
+                rep.update(audit.end(rep.dh().actor(), statusType, errorReason, now));
             });
         }
 
-        public AuditEvent error(final AuditEvent event, String errorReason) {
-            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
-                return event.error(rep, errorReason);
+        /** Writes the audit logs in JDBC batches within a transaction. */
+        void write(final Collection<AuditLog> inserts, final Collection<AuditLog> updates) {
+            TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                rep.saveAll(inserts);
+                rep.updateAll(updates);
             });
         }
     }
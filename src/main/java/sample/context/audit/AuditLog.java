@@ -0,0 +1,25 @@
+package sample.context.audit;
+
+import java.time.LocalDateTime;
+
+import sample.context.ActionStatusType;
+import sample.context.DomainEntity;
+import sample.context.actor.Actor;
+
+/**
+ * An audit log that is recorded at the start and the end of a process.
+ */
+interface AuditLog extends DomainEntity {
+
+    Long getId();
+
+    void setId(Long id);
+
+    /**
+     * Ends the log with the status. (it is not persisted)
+     *
+     * @param actor actor at the end of the process
+     */
+    AuditLog end(Actor actor, ActionStatusType statusType, String errorReason, LocalDateTime now);
+
+}
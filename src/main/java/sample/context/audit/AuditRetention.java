@@ -0,0 +1,186 @@
+package sample.context.audit;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import sample.ApplicationProperties.AuditProps;
+import sample.context.DomainHelper;
+import sample.context.orm.Keyset;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+
+/**
+ * Keeps the audit logs for the retention period.
+ * <p>
+ * On PostgreSQL the audit tables are partitioned by month of the start date.
+ * (see data/db/100-ddl-system.sql) The partitions of the coming months are
+ * created in advance, and a partition whose whole month expired is detached
+ * and dropped instead of deleting its rows.
+ * <p>
+ * The other expired logs, i.e. those in the month across the expired day, in
+ * the default partition, or in a table that is not partitioned such as on H2,
+ * are deleted in chunks in start date order. Each chunk is committed on its own
+ * and the purge pauses between chunks, so that neither long locks nor a burst
+ * of WAL hold up the online processes.
+ * low: Detaching a partition locks the table for a moment. A partition is only
+ * created while the default partition has no rows of its month.
+ */
+@Component
+@RequiredArgsConstructor(staticName = "of")
+@Slf4j
+public class AuditRetention {
+    private static final List<String> Tables = List.of("audit_actor", "audit_event");
+    private static final DateTimeFormatter PartitionMonth = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+
+    /**
+     * Returns the start of an audit log search, not before the retention, so
+     * that the expired logs awaiting the purge are neither read nor their
+     * partitions scanned.
+     */
+    public static LocalDateTime searchFrom(final DomainHelper dh, LocalDateTime fromDate) {
+        Duration retention = dh.props().getAudit().getRetention();
+        if (retention == null) {
+            return fromDate;
+        }
+        LocalDateTime oldest = expiredDay(dh.time().day(), retention).atStartOfDay();
+        return fromDate == null || fromDate.isBefore(oldest) ? oldest : fromDate;
+    }
+
+    private static LocalDate expiredDay(LocalDate day, Duration retention) {
+        return day.minusDays(retention.toDays());
+    }
+
+    /** Creates the partitions and purges the expired logs. Returns the logs deleted by rows. */
+    public long retain() {
+        AuditProps props = rep.dh().props().getAudit();
+        LocalDate day = rep.dh().time().day();
+        prepare(day, props.getPartitionsAhead());
+        if (props.getRetention() == null) {
+            return 0;
+        }
+        return purge(expiredDay(day, props.getRetention()));
+    }
+
+    /** Creates the partitions from the month of the day to the months ahead. (PostgreSQL only) */
+    public void prepare(LocalDate day, int monthsAhead) {
+        for (String table : partitionedTables()) {
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = YearMonth.from(day).plusMonths(i);
+                String sql = "CREATE TABLE IF NOT EXISTS " + partition(table, month) + " PARTITION OF " + table
+                        + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+                sql(sql);
+            }
+        }
+    }
+
+    /** Purges the logs started before the expired day. Returns the logs deleted by rows. */
+    public long purge(LocalDate expiredDay) {
+        for (String table : partitionedTables()) {
+            for (String partition : partitions(table)) {
+                YearMonth month = month(table, partition);
+                if (month != null && !month.plusMonths(1).atDay(1).isAfter(expiredDay)) {
+                    log.info("Drop the expired partition. [" + partition + "]");
+                    sql("ALTER TABLE " + table + " DETACH PARTITION " + partition, "DROP TABLE " + partition);
+                }
+            }
+        }
+        return purge(expiredDay, AuditActor::purge) + purge(expiredDay, AuditEvent::purge);
+    }
+
+    private long purge(LocalDate expiredDay, PurgeChunk chunk) {
+        AuditProps props = rep.dh().props().getAudit();
+        long deleted = 0;
+        Keyset after = null;
+        while (true) {
+            Keyset position = after;
+            List<Keyset> keys = TxTemplate.of(txm).tx(() -> {
+                return chunk.purge(rep, expiredDay, position, props.getPurgeChunkSize());
+            });
+            if (keys.isEmpty()) {
+                return deleted;
+            }
+            deleted += keys.size();
+            after = keys.get(keys.size() - 1);
+            if (keys.size() < props.getPurgeChunkSize()) {
+                return deleted;
+            }
+            try {
+                Thread.sleep(props.getPurgeInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return deleted;
+            }
+        }
+    }
+
+    private List<String> partitionedTables() {
+        if (!(rep.em().getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect)) {
+            return List.of();
+        }
+        return TxTemplate.of(txm).readOnly().tx(() -> {
+            List<String> tables = rep.tmpl().findBySql("SELECT CAST(c.relname AS varchar) FROM pg_partitioned_table p"
+                    + " JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname IN ?1", Tables);
+            return tables;
+        });
+    }
+
+    private List<String> partitions(String table) {
+        return TxTemplate.of(txm).readOnly().tx(() -> {
+            List<String> partitions = rep.tmpl().findBySql("SELECT CAST(c.relname AS varchar) FROM pg_inherits i"
+                    + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?1)", table);
+            return partitions;
+        });
+    }
+
+    private static String partition(String table, YearMonth month) {
+        return table + "_p" + month.format(PartitionMonth);
+    }
+
+    /** Returns the month of the partition. (null when not a monthly partition, e.g. the default) */
+    private static YearMonth month(String table, String partition) {
+        String prefix = table + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(prefix.length()), PartitionMonth);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Runs the statements in a transaction. A failure is logged, e.g. when another node ran them first. */
+    private void sql(String... sqls) {
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                for (String sql : sqls) {
+                    rep.tmpl().executeSql(sql);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to maintain the audit partitions. [" + String.join("; ", sqls) + "]", e);
+        }
+    }
+
+    @FunctionalInterface
+    private static interface PurgeChunk {
+        List<Keyset> purge(OrmRepository rep, LocalDate expiredDay, Keyset after, int limit);
+    }
+
+}
@@ -0,0 +1,478 @@
+package sample.context.audit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.DomainHelper;
+import sample.context.actor.Actor;
+import sample.context.audit.AuditActor.RegAuditActor;
+import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.audit.AuditHandler.AuditPersister;
+
+/**
+ * Writes the start and the end of audit logs.
+ * <p>
+ * When asynchronous, the records are queued and a background writer commits
+ * them in JDBC batches, one transaction per batch, so that the audited process
+ * neither waits for the commits nor holds another connection. A log that ends
+ * before its start is written is inserted once in its final state.
+ * <p>
+ * With the long-running threshold, the start is held instead of being queued,
+ * and a log that ends within the threshold is written once at its end. The
+ * writer thread ticks a timer wheel of the held logs and writes those still
+ * running after the threshold as PROCESSING, so that a process that does not
+ * respond is still detected.
+ * <p>
+ * When synchronous, each start and end is committed in the caller thread by
+ * AuditPersister. The writer also turns synchronous once closed, after the
+ * queued records are written. The records of the logs queued before, e.g. the
+ * end of a log whose start was queued, are then written in the caller thread
+ * once the writer thread stopped.
+ * <p>
+ * The queue gauge is registered and the writer thread started in
+ * afterPropertiesSet, which Spring calls for the bean.
+ * <p>
+ * The following meters are registered.
+ * <ul>
+ * <li>audit.queue: records waiting to be written
+ * <li>audit.write.lag: time from queueing to the commit of the record
+ * <li>audit.dropped: records dropped by a full queue (tag "record" of
+ * start/end)
+ * <li>audit.write.failed: records whose batch failed to be written
+ * <li>audit.running: logs written as running after the threshold
+ * </ul>
+ * low: Records are only dropped with DROP or a block timeout. A dropped end
+ * leaves its log PROCESSING, the same as a process that did not respond, and a
+ * dropped end of a held log loses the whole log. Records in the queue are lost
+ * when the process is killed.
+ */
+@Slf4j
+public class AuditWriter implements InitializingBean, AutoCloseable {
+    private static final long OfferSliceNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private final AuditPersister persister;
+    private final DomainHelper dh;
+    private final MeterRegistry registry;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final long blockNanos;
+    private final long longRunningNanos;
+    private final TimerWheel wheel;
+    private Thread writer;
+    private volatile boolean closed;
+    /** Whether the writer thread has stopped, so that records are written in the caller thread. */
+    private volatile boolean stopped;
+    /** Logs started and not yet ended. (used by the writer thread only) */
+    private final Map<Ticket, AuditLog> started = new HashMap<>();
+    private final Timer lag;
+    private final Counter droppedStart;
+    private final Counter droppedEnd;
+    private final Counter failed;
+    private final Counter running;
+
+    /** Creates a synchronous writer. */
+    public AuditWriter(AuditPersister persister, DomainHelper dh, MeterRegistry registry) {
+        this(persister, dh, registry, 0, 0, Overflow.BLOCK, null, null);
+    }
+
+    /**
+     * @param queueCapacity records that may wait. (synchronous when 0)
+     * @param batchSize     records written per transaction
+     * @param overflow      behavior when the queue is full
+     * @param blockTimeout  time to wait for the queue with BLOCK. (without limit
+     *                      when null)
+     * @param longRunning   time a start is held before it is written. (the start
+     *                      is written at once when null or synchronous)
+     */
+    public AuditWriter(AuditPersister persister, DomainHelper dh, MeterRegistry registry,
+            int queueCapacity, int batchSize, Overflow overflow, Duration blockTimeout, Duration longRunning) {
+        this.persister = persister;
+        this.dh = dh;
+        this.registry = registry;
+        this.queue = 0 < queueCapacity ? new ArrayBlockingQueue<>(queueCapacity) : null;
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.blockNanos = blockTimeout != null ? blockTimeout.toNanos() : 0;
+        this.longRunningNanos = longRunning != null ? longRunning.toNanos() : 0;
+        this.wheel = queue != null && 0 < longRunningNanos ? new TimerWheel(longRunningNanos) : null;
+        this.lag = Timer.builder("audit.write.lag")
+                .description("Time from queueing to the commit of the audit record").register(registry);
+        this.droppedStart = dropped(registry, "start");
+        this.droppedEnd = dropped(registry, "end");
+        this.failed = Counter.builder("audit.write.failed")
+                .description("Audit records whose batch failed to be written").register(registry);
+        this.running = Counter.builder("audit.running")
+                .description("Audit logs written as running after the threshold").register(registry);
+    }
+
+    /** Registers the queue gauge and starts the writer thread when asynchronous. */
+    @Override
+    public void afterPropertiesSet() {
+        Gauge.builder("audit.queue", this, v -> v.queue != null ? v.queue.size() : 0)
+                .description("Audit records waiting to be written").register(registry);
+        if (queue != null && writer == null) {
+            writer = new Thread(this::run, "audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    private Counter dropped(MeterRegistry registry, String record) {
+        return Counter.builder("audit.dropped").tag("record", record)
+                .description("Audit records dropped by a full queue").register(registry);
+    }
+
+    public boolean async() {
+        return queue != null && !closed;
+    }
+
+    /** Starts the user audit log. */
+    public Ticket start(final RegAuditActor p) {
+        if (!async()) {
+            return new Ticket(persister.start(p));
+        }
+        return start(p.create(dh.actor(), dh.time().date()));
+    }
+
+    /** Starts the event audit log. */
+    public Ticket start(final RegAuditEvent p) {
+        if (!async()) {
+            return new Ticket(persister.start(p));
+        }
+        return start(p.create(dh.time().date()));
+    }
+
+    private Ticket start(AuditLog audit) {
+        if (wheel != null) {
+            var ticket = new Ticket(audit, System.nanoTime() + longRunningNanos);
+            wheel.add(ticket);
+            return ticket;
+        }
+        var ticket = new Ticket(null);
+        if (!enqueue(new Entry(ticket, audit, null, null, null, null, System.nanoTime()))) {
+            ticket.dropped = true;
+            droppedStart.increment();
+        }
+        return ticket;
+    }
+
+    /** Sets the audit log to PROCESSED status. */
+    public void finish(final Ticket ticket) {
+        end(ticket, ActionStatusType.PROCESSED, null);
+    }
+
+    /** Sets the audit log to CANCELLED status. */
+    public void cancel(final Ticket ticket, String errorReason) {
+        end(ticket, ActionStatusType.CANCELLED, errorReason);
+    }
+
+    /** Sets the audit log to ERROR status. */
+    public void error(final Ticket ticket, String errorReason) {
+        end(ticket, ActionStatusType.ERROR, errorReason);
+    }
+
+    private void end(final Ticket ticket, ActionStatusType statusType, String errorReason) {
+        if (ticket.dropped) {
+            return;
+        }
+        if (ticket.audit != null) {
+            persister.end(ticket.audit, statusType, errorReason);
+            return;
+        }
+        // a held log ending within the threshold is written once.
+        AuditLog held = ticket.held != null && ticket.holding.compareAndSet(true, false) ? ticket.held : null;
+        var entry = new Entry(ticket, held, statusType, errorReason,
+                dh.actor(), dh.time().date(), System.nanoTime());
+        if (!enqueue(entry)) {
+            ticket.dropped = true;
+            droppedEnd.increment();
+        }
+    }
+
+    /**
+     * Queues the record, or writes it in the caller thread once the writer thread
+     * stopped. Returns false when dropped.
+     */
+    private boolean enqueue(Entry entry) {
+        if (!stopped && offer(entry)) {
+            if (stopped) {
+                // the writer thread may have stopped before the record was queued.
+                writeClosed(null);
+            }
+            return true;
+        }
+        if (!stopped) {
+            return false;
+        }
+        writeClosed(entry);
+        return true;
+    }
+
+    private boolean offer(Entry entry) {
+        if (overflow == Overflow.DROP) {
+            return queue.offer(entry);
+        }
+        long deadline = System.nanoTime() + blockNanos;
+        try {
+            // a slice at a time, so as not to wait for a writer thread that stopped.
+            while (!stopped) {
+                long wait = 0 < blockNanos ? deadline - System.nanoTime() : OfferSliceNanos;
+                if (wait <= 0) {
+                    return false;
+                }
+                if (queue.offer(entry, Math.min(wait, OfferSliceNanos), TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        long tickNanos = wheel != null ? wheel.tickNanos : TimeUnit.MILLISECONDS.toNanos(100);
+        while (true) {
+            Entry first;
+            try {
+                first = queue.poll(tickNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                closed = true;
+                first = queue.poll();
+            }
+            if (!writeQueued(first, first == null && closed) && closed) {
+                break;
+            }
+        }
+        stopped = true;
+        // the records queued before the callers saw the writer thread stopped.
+        writeClosed(null);
+    }
+
+    /**
+     * Writes a batch of the expired held logs, the first record and the queued
+     * records. Returns false when there was nothing to write.
+     * <p>
+     * Synchronized with the caller threads writing once closed, since the
+     * started logs are not thread-safe.
+     */
+    private synchronized boolean writeQueued(Entry first, boolean flush) {
+        var batch = new ArrayList<Entry>(batchSize);
+        if (wheel != null) {
+            // the held logs are written before their ends in the queue.
+            wheel.expire(flush, v -> batch.add(runningEntry(v)));
+        }
+        if (first != null) {
+            batch.add(first);
+        }
+        queue.drainTo(batch, Math.max(batchSize - batch.size(), 0));
+        if (batch.isEmpty()) {
+            return false;
+        }
+        write(batch);
+        return true;
+    }
+
+    /** Writes the records left in the queue and then the record, once the writer thread stopped. */
+    private synchronized void writeClosed(Entry entry) {
+        while (writeQueued(null, true)) {
+            // until the queue is empty.
+        }
+        if (entry != null) {
+            write(List.of(entry));
+        }
+    }
+
+    private Entry runningEntry(Ticket ticket) {
+        running.increment();
+        return new Entry(ticket, ticket.held, null, null, null, null, System.nanoTime());
+    }
+
+    private void write(List<Entry> batch) {
+        Set<AuditLog> inserts = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<AuditLog> updates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry entry : batch) {
+            AuditLog audit = entry.audit();
+            if (audit != null) {
+                inserts.add(audit);
+                if (entry.statusType() == null) {
+                    started.put(entry.ticket(), audit);
+                    continue;
+                }
+            } else {
+                audit = started.remove(entry.ticket());
+                if (audit == null) {
+                    continue; // the start was lost
+                }
+                if (!inserts.contains(audit)) {
+                    (audit.getId() == null ? inserts : updates).add(audit);
+                }
+            }
+            audit.end(entry.actor(), entry.statusType(), entry.errorReason(), entry.date());
+        }
+        if (queue.remainingCapacity() < started.size()) {
+            // the logs whose end was dropped.
+            started.keySet().removeIf(v -> v.dropped);
+        }
+        try {
+            persister.write(inserts, updates);
+            long now = System.nanoTime();
+            batch.forEach(v -> lag.record(now - v.queued(), TimeUnit.NANOSECONDS));
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.error("Failed to write the audit logs. [" + batch.size() + "]", e);
+            // the logs still running are inserted at their end.
+            inserts.forEach(v -> v.setId(null));
+        }
+    }
+
+    /** Stops queueing and waits for the queued records to be written. */
+    @Override
+    public void close() {
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+            if (writer.isAlive()) {
+                log.warn("Audit records were not written in time. [" + queue.size() + "]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A started audit log, passed to its end. */
+    public static final class Ticket {
+        /** The log committed at the start. (null when queued) */
+        private final AuditLog audit;
+        /** The log held until the threshold. (null when not held) */
+        private final AuditLog held;
+        /** Time the held log is written as running. (System.nanoTime) */
+        private final long deadline;
+        /** Whether the held log is neither ended nor written as running. */
+        private final AtomicBoolean holding;
+        /** Whether the start or the end was dropped. */
+        private volatile boolean dropped;
+
+        private Ticket(AuditLog audit) {
+            this.audit = audit;
+            this.held = null;
+            this.deadline = 0;
+            this.holding = null;
+        }
+
+        private Ticket(AuditLog held, long deadline) {
+            this.audit = null;
+            this.held = held;
+            this.deadline = deadline;
+            this.holding = new AtomicBoolean(true);
+        }
+    }
+
+    /**
+     * A hashed timer wheel of the held logs.
+     * <p>
+     * A ticket is added to the slot of its deadline by any thread and expired by
+     * the writer thread, which visits the slots whose tick has passed. A ticket
+     * ended before its deadline is simply discarded when its slot is visited.
+     */
+    private static class TimerWheel {
+        private static final int MaxSlots = 512;
+        private final long tickNanos;
+        private final List<Queue<Ticket>> slots;
+        /** The next tick to visit. */
+        private long tick;
+
+        TimerWheel(long delayNanos) {
+            this.tickNanos = Math.clamp(delayNanos / 8,
+                    TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(100));
+            this.slots = Stream.<Queue<Ticket>>generate(ConcurrentLinkedQueue::new)
+                    .limit(Math.min(delayNanos / tickNanos + 2, MaxSlots))
+                    .toList();
+            this.tick = Math.floorDiv(System.nanoTime(), tickNanos);
+        }
+
+        void add(Ticket ticket) {
+            slots.get(slot(Math.floorDiv(ticket.deadline, tickNanos))).add(ticket);
+        }
+
+        private int slot(long tick) {
+            return (int) Math.floorMod(tick, (long) slots.size());
+        }
+
+        /**
+         * Passes the held tickets whose deadline passed, or all of them when
+         * flushing, to the consumer.
+         */
+        void expire(boolean flush, Consumer<Ticket> expired) {
+            long now = System.nanoTime();
+            long current = Math.floorDiv(now, tickNanos);
+            long from = flush ? current - slots.size() : Math.max(tick, current - slots.size());
+            for (long t = from; t < current; t++) {
+                Queue<Ticket> slot = slots.get(slot(t));
+                var later = new ArrayList<Ticket>();
+                for (Ticket ticket; (ticket = slot.poll()) != null;) {
+                    if (!ticket.holding.get()) {
+                        continue; // ended
+                    }
+                    if (!flush && now - ticket.deadline < 0) {
+                        later.add(ticket); // a later round
+                    } else if (ticket.holding.compareAndSet(true, false)) {
+                        expired.accept(ticket);
+                    }
+                }
+                slot.addAll(later);
+            }
+            tick = Math.max(tick, current);
+        }
+    }
+
+    /**
+     * A start (with the log), an end, or a whole log (with the log and the status)
+     * of an audit log.
+     */
+    private static record Entry(
+            Ticket ticket,
+            AuditLog audit,
+            ActionStatusType statusType,
+            String errorReason,
+            Actor actor,
+            LocalDateTime date,
+            long queued) {
+    }
+
+    /** Behavior when the queue is full. */
+    public static enum Overflow {
+        /** Drops the record at once. (the audit logs may be lost) */
+        DROP,
+        /** Waits for the queue, up to the block timeout when set, then drops the record. */
+        BLOCK;
+    }
+
+}
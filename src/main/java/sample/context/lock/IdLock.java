@@ -0,0 +1,29 @@
+package sample.context.lock;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+import sample.context.DomainEntity;
+import sample.model.constraints.IdStr;
+
+/**
+ * Represents a row of the ID lock table.
+ * <p>
+ * The row carries no information of its own. It only exists so that each ID
+ * has a record that can be locked with "for update".
+ */
+@Entity
+@Data
+public class IdLock implements DomainEntity {
+
+    @Id
+    @IdStr(max = 120)
+    private String id;
+
+    public static IdLock of(String id) {
+        var m = new IdLock();
+        m.setId(id);
+        return m;
+    }
+
+}
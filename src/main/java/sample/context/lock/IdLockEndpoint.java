@@ -0,0 +1,29 @@
+package sample.context.lock;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import sample.context.lock.IdLockMonitor.Contention;
+
+/**
+ * Lists the most contended IDs within the sliding window of IdLockMonitor.
+ */
+@Component
+@Endpoint(id = "idlock")
+@RequiredArgsConstructor(staticName = "of")
+public class IdLockEndpoint {
+    public static final int DefaultLimit = 10;
+
+    private final IdLockMonitor monitor;
+
+    @ReadOperation
+    public List<Contention> contention(@Nullable Integer limit) {
+        return monitor.top(limit == null ? DefaultLimit : limit);
+    }
+
+}
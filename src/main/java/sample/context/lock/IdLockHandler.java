@@ -1,22 +1,47 @@
 package sample.context.lock;
 
 import java.io.Serializable;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
-import org.springframework.stereotype.Component;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PessimisticLockException;
 import sample.context.ErrorKeys;
 import sample.context.InvocationException;
+import sample.context.orm.OrmRepository;
 
 /**
  * Represents an ID lock.
  * low: Here we will simply target only account-by-account ID locks.
  * low: Normally, a pessimistic lock is obtained by a "for update" request to
  * the DB lock table, but since this is a sample, a memory lock is used.
+ * <p>
+ * The implementation is selected with sample.lock.* in application.yml. Use
+ * {@link DbIdLockHandler} when the application runs on multiple nodes.
  */
 public interface IdLockHandler {
 
@@ -29,29 +54,210 @@ public interface IdLockHandler {
     }
 
     default <T> T call(Serializable id, LockType lockType, final Supplier<T> callable) {
-        if (lockType.isWrite()) {
-            writeLock(id);
-        } else {
-            readLock(id);
+        return call(List.of(new IdLockPair(id, lockType)), callable);
+    }
+
+    /**
+     * Execute the process on multiple ID locks.
+     * <p>
+     * The locks are acquired in the order of {@link #lockOrder} and released in
+     * reverse order, so callers cannot deadlock on each other whatever order they
+     * list the IDs in. Avoid nesting calls on different IDs, since the nested
+     * locks are outside that order.
+     */
+    default <T> T call(Collection<IdLockPair> pairs, final Supplier<T> callable) {
+        return call(pairs, null, callable);
+    }
+
+    /**
+     * Execute the process on multiple ID locks, waiting at most timeout for each
+     * lock.
+     * <p>
+     * When timeout is null, the default timeout of the handler is used.
+     * <p>
+     * When every lock is OPTIMISTIC, the process first runs without taking any
+     * lock and is run again under READ locks only if a writer intervened. Mixed
+     * with other types, OPTIMISTIC is taken as READ.
+     */
+    default <T> T call(Collection<IdLockPair> pairs, Duration timeout, final Supplier<T> callable) {
+        List<IdLockPair> order = lockOrder(pairs);
+        if (!order.isEmpty() && order.stream().allMatch(p -> p.lockType().isOptimistic())) {
+            long[] stamps = new long[order.size()];
+            int started = 0;
+            try {
+                boolean valid = true;
+                for (; started < stamps.length; started++) {
+                    stamps[started] = tryOptimisticRead(order.get(started).id());
+                    valid &= stamps[started] != 0;
+                }
+                if (valid) {
+                    try {
+                        T v = callable.get();
+                        if (validateAll(order, stamps)) {
+                            return v;
+                        }
+                    } catch (RuntimeException e) {
+                        // An error caused by reading during a write is retried as well.
+                        if (validateAll(order, stamps)) {
+                            throw e;
+                        }
+                    }
+                }
+            } finally {
+                for (int i = 0; i < started; i++) {
+                    endOptimisticRead(order.get(i).id());
+                }
+            }
+            order = order.stream().map(p -> IdLockPair.read(p.id())).toList();
         }
+        Deque<Serializable> held = new ArrayDeque<>();
         try {
+            for (IdLockPair pair : order) {
+                if (pair.lockType().isWrite()) {
+                    writeLock(pair.id(), timeout);
+                } else {
+                    readLock(pair.id(), timeout);
+                }
+                held.push(pair.id());
+            }
             return callable.get();
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
             throw InvocationException.of(ErrorKeys.Exception, e);
         } finally {
-            unlock(id);
+            while (!held.isEmpty()) {
+                unlock(held.pop());
+            }
         }
     }
 
-    void writeLock(Serializable id);
+    /**
+     * Returns the locks to acquire.
+     * <p>
+     * Pairs with the same ID are merged into the strongest type (WRITE, READ,
+     * OPTIMISTIC in that order) and sorted in the canonical order.
+     */
+    default List<IdLockPair> lockOrder(Collection<IdLockPair> pairs) {
+        Map<Serializable, LockType> merged = new HashMap<>();
+        pairs.forEach(p -> merged.merge(p.id(), p.lockType(), LockType::max));
+        return merged.entrySet().stream()
+                .map(e -> new IdLockPair(e.getKey(), e.getValue()))
+                .sorted(IdLockPair.CanonicalOrder)
+                .toList();
+    }
 
-    void readLock(Serializable id);
+    default void writeLock(Serializable id) {
+        writeLock(id, null);
+    }
+
+    /**
+     * Acquires the write lock, waiting at most timeout.
+     * <p>
+     * When timeout is null, the default timeout of the handler is used.
+     * IdLockTimeoutException is thrown when the lock cannot be acquired in time.
+     */
+    void writeLock(Serializable id, Duration timeout);
+
+    default void readLock(Serializable id) {
+        readLock(id, null);
+    }
+
+    /**
+     * Acquires the read lock, waiting at most timeout.
+     * <p>
+     * When timeout is null, the default timeout of the handler is used.
+     * IdLockTimeoutException is thrown when the lock cannot be acquired in time.
+     */
+    void readLock(Serializable id, Duration timeout);
 
     void unlock(final Serializable id);
 
+    /**
+     * Starts an optimistic read and returns its stamp.
+     * <p>
+     * Returns 0 when a writer holds the lock or the handler does not support
+     * optimistic reads, in which case the caller falls back to a read lock.
+     * Always pair with {@link #endOptimisticRead}, whatever the result.
+     */
+    default long tryOptimisticRead(Serializable id) {
+        return 0L;
+    }
+
+    /** Returns true when no writer has acquired the lock since the stamp was issued. */
+    default boolean validate(Serializable id, long stamp) {
+        return false;
+    }
+
+    /** Ends the optimistic read started with {@link #tryOptimisticRead}. */
+    default void endOptimisticRead(Serializable id) {
+    }
+
+    private boolean validateAll(List<IdLockPair> order, long[] stamps) {
+        for (int i = 0; i < stamps.length; i++) {
+            if (!validate(order.get(i).id(), stamps[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true when the lock must be taken inside the transaction it
+     * protects. (The lock is then released when that transaction completes.)
+     */
+    default boolean joinsTransaction() {
+        return false;
+    }
+
+    /**
+     * A read lock held by the current thread cannot be upgraded, as
+     * ReentrantReadWriteLock would wait for itself forever.
+     */
+    private static boolean isReadOnlyHeld(ReentrantReadWriteLock lock) {
+        return 0 < lock.getReadHoldCount() && !lock.isWriteLockedByCurrentThread();
+    }
+
+    private static InvocationException upgradeError(Serializable id) {
+        return InvocationException.of("A read lock cannot be upgraded to a write lock. [" + id + "]");
+    }
+
+    /** Returns the version as a stamp, or 0 while a writer holds the lock. */
+    private static long stamp(AtomicLong version) {
+        long v = version.get();
+        return (v & 1) == 0 ? v : 0L;
+    }
+
+    private static boolean validateStamp(AtomicLong version, long stamp) {
+        // Keeps the reads of the process from being reordered after the check.
+        VarHandle.acquireFence();
+        return stamp != 0 && version.get() == stamp;
+    }
+
+    /** Acquires the lock, waiting at most timeout. (indefinitely when null) */
+    private static void lock(Lock lock, Serializable id, Duration timeout) {
+        if (timeout == null) {
+            lock.lock();
+            return;
+        }
+        try {
+            if (!lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw IdLockTimeoutException.of(id, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw InvocationException.of(ErrorKeys.Exception, e);
+        }
+    }
+
+    /**
+     * Lock types, in ascending order of strength.
+     * <p>
+     * OPTIMISTIC is a read that does not block writers. Use it only for
+     * processes without side effects, since the process may run twice.
+     */
     public static enum LockType {
+        OPTIMISTIC,
         READ,
         WRITE;
 
@@ -62,30 +268,224 @@ public interface IdLockHandler {
         public boolean isWrite() {
             return this == WRITE;
         }
+
+        public boolean isOptimistic() {
+            return this == OPTIMISTIC;
+        }
+
+        /** Returns the stronger of the two lock types. */
+        public static LockType max(LockType a, LockType b) {
+            return a.compareTo(b) < 0 ? b : a;
+        }
     }
 
     /** Represents a pair of IdLock targets and types. */
     public static record IdLockPair(
             Serializable id, LockType lockType) {
+        /** The order in which multiple ID locks are acquired. */
+        public static final Comparator<IdLockPair> CanonicalOrder = Comparator
+                .comparing((IdLockPair p) -> p.id().getClass().getName())
+                .thenComparing(p -> p.id().toString());
+
+        public static IdLockPair read(Serializable id) {
+            return new IdLockPair(id, LockType.READ);
+        }
+
+        public static IdLockPair write(Serializable id) {
+            return new IdLockPair(id, LockType.WRITE);
+        }
+
+        public static IdLockPair optimistic(Serializable id) {
+            return new IdLockPair(id, LockType.OPTIMISTIC);
+        }
     }
 
-    @Component
+    /**
+     * ID lock that keeps a lock per ID only while it is in use.
+     * <p>
+     * Each entry counts the threads that hold or wait for it and is removed from
+     * the lock table when the count drops to zero, so the table size follows the
+     * number of IDs in use rather than the number of IDs ever locked.
+     * <p>
+     * Optimistic reads are validated with a version per entry, bumped when a
+     * writer acquires and releases the lock. An optimistic reader also counts as
+     * a reference, so the version is not lost by eviction while it reads.
+     */
     public static class IdLockHandlerImpl implements IdLockHandler {
-        private final ConcurrentMap<Serializable, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Serializable, LockEntry> lockMap = new ConcurrentHashMap<>();
+        private final Duration defaultTimeout;
+
+        public IdLockHandlerImpl() {
+            this(null);
+        }
+
+        /** When defaultTimeout is null, locks are waited for indefinitely. */
+        public IdLockHandlerImpl(Duration defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+        }
+
+        public void writeLock(final Serializable id, Duration timeout) {
+            Optional.of(id).ifPresent((v) -> {
+                LockEntry entry = acquire(v);
+                try {
+                    if (isReadOnlyHeld(entry.lock)) {
+                        throw upgradeError(v);
+                    }
+                    lock(entry.lock.writeLock(), v, timeout != null ? timeout : defaultTimeout);
+                } catch (RuntimeException e) {
+                    release(v);
+                    throw e;
+                }
+                if (entry.lock.getWriteHoldCount() == 1) {
+                    entry.version.incrementAndGet();
+                }
+            });
+        }
+
+        /** The reference count is incremented atomically with the lookup. */
+        private LockEntry acquire(final Serializable id) {
+            return lockMap.compute(id, (k, v) -> {
+                LockEntry entry = v != null ? v : new LockEntry();
+                entry.refs++;
+                return entry;
+            });
+        }
+
+        public void readLock(final Serializable id, Duration timeout) {
+            Optional.of(id).ifPresent((v) -> {
+                ReentrantReadWriteLock lock = acquire(v).lock;
+                try {
+                    lock(lock.readLock(), v, timeout != null ? timeout : defaultTimeout);
+                } catch (RuntimeException e) {
+                    release(v);
+                    throw e;
+                }
+            });
+        }
 
-        public void writeLock(final Serializable id) {
+        public void unlock(final Serializable id) {
             Optional.of(id).ifPresent((v) -> {
-                idLock(v).writeLock().lock();
+                LockEntry entry = lockMap.get(v);
+                if (entry == null) {
+                    throw new IllegalMonitorStateException("The lock is not held. [" + v + "]");
+                }
+                if (entry.lock.isWriteLockedByCurrentThread()) {
+                    if (entry.lock.getWriteHoldCount() == 1) {
+                        entry.version.incrementAndGet();
+                    }
+                    entry.lock.writeLock().unlock();
+                } else {
+                    entry.lock.readLock().unlock();
+                }
+                release(v);
             });
         }
 
+        @Override
+        public long tryOptimisticRead(final Serializable id) {
+            return stamp(acquire(id).version);
+        }
+
+        @Override
+        public boolean validate(final Serializable id, long stamp) {
+            LockEntry entry = lockMap.get(id);
+            return entry != null && validateStamp(entry.version, stamp);
+        }
+
+        @Override
+        public void endOptimisticRead(final Serializable id) {
+            release(id);
+        }
+
+        private void release(final Serializable id) {
+            lockMap.computeIfPresent(id, (k, v) -> --v.refs == 0 ? null : v);
+        }
+
+        /** Returns the number of IDs currently held in the lock table. */
+        int size() {
+            return lockMap.size();
+        }
+
+        private static class LockEntry {
+            private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            /** Odd while a writer holds the lock. Starts at 2 since stamp 0 means invalid. */
+            private final AtomicLong version = new AtomicLong(2);
+            /** Only updated inside the atomic map operations. */
+            private int refs;
+        }
+
+    }
+
+    /**
+     * ID lock that maps IDs onto a fixed array of locks.
+     * <p>
+     * Memory usage is constant regardless of the number of IDs, at the cost of
+     * unrelated IDs sharing a lock when their hashes collide.
+     * low: Taking a read lock and then a write lock on different IDs in the same
+     * thread is rejected when both fall on the same stripe, so keep the stripe
+     * count well above the number of concurrently locked IDs.
+     */
+    public static class StripedIdLockHandler implements IdLockHandler {
+        private final ReentrantReadWriteLock[] stripes;
+        private final AtomicLong[] versions;
+        private final Duration defaultTimeout;
+
+        public StripedIdLockHandler(int stripes) {
+            this(stripes, null);
+        }
+
+        /** When defaultTimeout is null, locks are waited for indefinitely. */
+        public StripedIdLockHandler(int stripes, Duration defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+            Assert.isTrue(0 < stripes, "stripes must be positive.");
+            int size = Integer.highestOneBit(stripes);
+            this.stripes = new ReentrantReadWriteLock[size < stripes ? size << 1 : size];
+            this.versions = new AtomicLong[this.stripes.length];
+            for (int i = 0; i < this.stripes.length; i++) {
+                this.stripes[i] = new ReentrantReadWriteLock();
+                this.versions[i] = new AtomicLong(2);
+            }
+        }
+
         private ReentrantReadWriteLock idLock(final Serializable id) {
-            return lockMap.computeIfAbsent(id, v -> new ReentrantReadWriteLock());
+            return stripes[stripe(id)];
+        }
+
+        private int stripe(final Serializable id) {
+            int h = id.hashCode();
+            return (h ^ (h >>> 16)) & (stripes.length - 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * IDs are merged and ordered by stripe, since IDs sharing a stripe share
+         * the lock.
+         */
+        @Override
+        public List<IdLockPair> lockOrder(Collection<IdLockPair> pairs) {
+            Map<Integer, IdLockPair> merged = new TreeMap<>();
+            pairs.forEach(p -> merged.merge(stripe(p.id()), p,
+                    (a, b) -> LockType.max(a.lockType(), b.lockType()) == a.lockType() ? a : b));
+            return List.copyOf(merged.values());
+        }
+
+        public void writeLock(final Serializable id, Duration timeout) {
+            Optional.of(id).ifPresent((v) -> {
+                ReentrantReadWriteLock lock = idLock(v);
+                if (isReadOnlyHeld(lock)) {
+                    throw upgradeError(v);
+                }
+                lock(lock.writeLock(), v, timeout != null ? timeout : defaultTimeout);
+                if (lock.getWriteHoldCount() == 1) {
+                    versions[stripe(v)].incrementAndGet();
+                }
+            });
         }
 
-        public void readLock(final Serializable id) {
+        public void readLock(final Serializable id, Duration timeout) {
             Optional.of(id).ifPresent((v) -> {
-                idLock(v).readLock().lock();
+                lock(idLock(v).readLock(), v, timeout != null ? timeout : defaultTimeout);
             });
         }
 
@@ -93,6 +493,9 @@ public interface IdLockHandler {
             Optional.of(id).ifPresent((v) -> {
                 ReentrantReadWriteLock idLock = idLock(v);
                 if (idLock.isWriteLockedByCurrentThread()) {
+                    if (idLock.getWriteHoldCount() == 1) {
+                        versions[stripe(v)].incrementAndGet();
+                    }
                     idLock.writeLock().unlock();
                 } else {
                     idLock.readLock().unlock();
@@ -100,5 +503,228 @@ public interface IdLockHandler {
             });
         }
 
+        @Override
+        public long tryOptimisticRead(final Serializable id) {
+            return stamp(versions[stripe(id)]);
+        }
+
+        @Override
+        public boolean validate(final Serializable id, long stamp) {
+            return validateStamp(versions[stripe(id)], stamp);
+        }
+
+    }
+
+    /**
+     * ID lock shared across nodes through the DB lock table.
+     * <p>
+     * The IdLock row of the ID is locked with "for update" in the current
+     * transaction, so the lock lasts until that transaction completes. Threads
+     * of the same node are first serialized on an in-memory lock so that only
+     * one of them waits on the DB row, and an ID already locked by the current
+     * transaction is not locked again.
+     * <p>
+     * Optimistic reads are not supported and always fall back to READ, since a
+     * writer on another node cannot be detected without the DB.
+     */
+    public static class DbIdLockHandler implements IdLockHandler {
+        private final IdLockHandler local = new IdLockHandlerImpl();
+        private final OrmRepository rep;
+        private final Duration defaultTimeout;
+
+        public DbIdLockHandler(OrmRepository rep) {
+            this(rep, null);
+        }
+
+        /**
+         * When defaultTimeout is null, locks are waited for indefinitely. (up to the
+         * lock timeout of the DB)
+         */
+        public DbIdLockHandler(OrmRepository rep, Duration defaultTimeout) {
+            this.rep = rep;
+            this.defaultTimeout = defaultTimeout;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean joinsTransaction() {
+            return true;
+        }
+
+        public void writeLock(final Serializable id, Duration timeout) {
+            Optional.of(id).ifPresent((v) -> {
+                Duration t = timeout != null ? timeout : defaultTimeout;
+                local.writeLock(v, t);
+                lockRow(v, LockType.WRITE, t);
+            });
+        }
+
+        public void readLock(final Serializable id, Duration timeout) {
+            Optional.of(id).ifPresent((v) -> {
+                Duration t = timeout != null ? timeout : defaultTimeout;
+                local.readLock(v, t);
+                lockRow(v, LockType.READ, t);
+            });
+        }
+
+        /** The DB row lock itself is released when the transaction completes. */
+        public void unlock(final Serializable id) {
+            local.unlock(id);
+        }
+
+        private void lockRow(final Serializable id, LockType lockType, Duration timeout) {
+            try {
+                Map<Serializable, LockType> held = heldLocks();
+                LockType current = held.get(id);
+                if (current != null && (current.isWrite() || lockType.isRead())) {
+                    return;
+                }
+                String key = id.toString();
+                if (findForLock(key, lockType, timeout) == null) {
+                    register(key);
+                    if (findForLock(key, lockType, timeout) == null) {
+                        throw new InvocationException("Failed to register the ID lock. [" + key + "]");
+                    }
+                }
+                held.put(id, lockType);
+            } catch (LockTimeoutException | PessimisticLockException e) {
+                local.unlock(id);
+                throw IdLockTimeoutException.of(id, timeout);
+            } catch (RuntimeException e) {
+                local.unlock(id);
+                throw e;
+            }
+        }
+
+        private IdLock findForLock(String key, LockType lockType, Duration timeout) {
+            var mode = lockType.isWrite() ? LockModeType.PESSIMISTIC_WRITE : LockModeType.PESSIMISTIC_READ;
+            if (timeout == null) {
+                return rep.em().find(IdLock.class, key, mode);
+            }
+            Map<String, Object> hints = Map.of(AvailableSettings.JAKARTA_LOCK_TIMEOUT, timeout.toMillis());
+            return rep.em().find(IdLock.class, key, mode, hints);
+        }
+
+        /**
+         * Registers the row in the current transaction, so that no second connection
+         * is taken from the pool. A row registered concurrently by another transaction
+         * is skipped by "on conflict do nothing".
+         */
+        private void register(String key) {
+            try {
+                rep.em().createQuery("insert into IdLock (id) values (:id) on conflict do nothing")
+                        .setParameter("id", key)
+                        .executeUpdate();
+            } catch (ConstraintViolationException e) {
+                // low: Dialects emulating the conflict clause with merge may still race on the key.
+                if (e.getKind() != ConstraintKind.UNIQUE) {
+                    throw e;
+                }
+            }
+        }
+
+        /** Returns the IDs locked by the current transaction. */
+        @SuppressWarnings("unchecked")
+        private Map<Serializable, LockType> heldLocks() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                throw new InvocationException("The DB ID lock requires an active transaction.");
+            }
+            var held = (Map<Serializable, LockType>) TransactionSynchronizationManager.getResource(this);
+            if (held == null) {
+                Map<Serializable, LockType> newHeld = new HashMap<>();
+                TransactionSynchronizationManager.bindResource(this, newHeld);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(DbIdLockHandler.this);
+                    }
+                });
+                return newHeld;
+            }
+            return held;
+        }
+
+    }
+
+    /**
+     * Decorates another handler and reports the lock usage to IdLockMonitor.
+     * <p>
+     * The hold time is measured per thread from the acquisition to the matching
+     * unlock.
+     */
+    public static class MonitoredIdLockHandler implements IdLockHandler {
+        private final IdLockHandler delegate;
+        private final IdLockMonitor monitor;
+        private final ThreadLocal<Deque<Held>> holds = ThreadLocal.withInitial(ArrayDeque::new);
+
+        public MonitoredIdLockHandler(IdLockHandler delegate, IdLockMonitor monitor) {
+            this.delegate = delegate;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public List<IdLockPair> lockOrder(Collection<IdLockPair> pairs) {
+            return delegate.lockOrder(pairs);
+        }
+
+        @Override
+        public boolean joinsTransaction() {
+            return delegate.joinsTransaction();
+        }
+
+        public void writeLock(final Serializable id, Duration timeout) {
+            long start = monitor.waiting(LockType.WRITE);
+            try {
+                delegate.writeLock(id, timeout);
+            } finally {
+                monitor.waited(id, LockType.WRITE, start);
+            }
+            holds.get().push(new Held(id, LockType.WRITE, System.nanoTime()));
+        }
+
+        public void readLock(final Serializable id, Duration timeout) {
+            long start = monitor.waiting(LockType.READ);
+            try {
+                delegate.readLock(id, timeout);
+            } finally {
+                monitor.waited(id, LockType.READ, start);
+            }
+            holds.get().push(new Held(id, LockType.READ, System.nanoTime()));
+        }
+
+        @Override
+        public long tryOptimisticRead(final Serializable id) {
+            return delegate.tryOptimisticRead(id);
+        }
+
+        @Override
+        public boolean validate(final Serializable id, long stamp) {
+            return delegate.validate(id, stamp);
+        }
+
+        @Override
+        public void endOptimisticRead(final Serializable id) {
+            delegate.endOptimisticRead(id);
+        }
+
+        public void unlock(final Serializable id) {
+            delegate.unlock(id);
+            Deque<Held> held = holds.get();
+            var it = held.iterator();
+            while (it.hasNext()) {
+                Held v = it.next();
+                if (v.id().equals(id)) {
+                    it.remove();
+                    monitor.held(v.lockType(), System.nanoTime() - v.startNanos());
+                    break;
+                }
+            }
+            if (held.isEmpty()) {
+                holds.remove();
+            }
+        }
+
+        private static record Held(Serializable id, LockType lockType, long startNanos) {
+        }
     }
 }
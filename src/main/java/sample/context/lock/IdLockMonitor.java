@@ -0,0 +1,150 @@
+package sample.context.lock;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import sample.context.lock.IdLockHandler.LockType;
+
+/**
+ * Collects the wait time, hold time and queue length of ID locks.
+ * <p>
+ * The following meters are registered per lock type. (tag "type")
+ * <ul>
+ * <li>idlock.wait: time spent waiting for the lock
+ * <li>idlock.hold: time the lock was held
+ * <li>idlock.queue: number of threads currently waiting
+ * </ul>
+ * In addition, IDs that had to wait are counted over a sliding window so that
+ * the most contended IDs can be listed.
+ * <p>
+ * low: The window is split into a fixed number of buckets, and each bucket keeps
+ * at most MaxIdsPerBucket IDs to bound the memory. IDs beyond that are only
+ * reflected in the meters.
+ */
+public class IdLockMonitor {
+    public static final int Buckets = 10;
+    public static final int MaxIdsPerBucket = 10_000;
+    /** Waits shorter than this are not regarded as contention. */
+    public static final long ContentionNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<LockType, Timer> waitTimers = new EnumMap<>(LockType.class);
+    private final Map<LockType, Timer> holdTimers = new EnumMap<>(LockType.class);
+    private final Map<LockType, AtomicInteger> queues = new EnumMap<>(LockType.class);
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(Buckets);
+
+    public IdLockMonitor(MeterRegistry registry, Duration window) {
+        this.bucketNanos = Math.max(1, window.toNanos() / Buckets);
+        for (LockType type : LockType.values()) {
+            String tag = type.name().toLowerCase();
+            waitTimers.put(type, Timer.builder("idlock.wait").tag("type", tag)
+                    .description("Time spent waiting for the ID lock").register(registry));
+            holdTimers.put(type, Timer.builder("idlock.hold").tag("type", tag)
+                    .description("Time the ID lock was held").register(registry));
+            AtomicInteger queue = new AtomicInteger();
+            queues.put(type, queue);
+            Gauge.builder("idlock.queue", queue, AtomicInteger::get).tag("type", tag)
+                    .description("Number of threads waiting for the ID lock").register(registry);
+        }
+    }
+
+    /** Called before waiting for the lock. Returns the start time. */
+    public long waiting(LockType type) {
+        queues.get(type).incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /** Called after the wait finished, whether the lock was acquired or not. */
+    public void waited(Serializable id, LockType type, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        queues.get(type).decrementAndGet();
+        waitTimers.get(type).record(nanos, TimeUnit.NANOSECONDS);
+        if (ContentionNanos <= nanos) {
+            contended(id, nanos);
+        }
+    }
+
+    /** Called after the lock was released. */
+    public void held(LockType type, long nanos) {
+        holdTimers.get(type).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void contended(Serializable id, long nanos) {
+        long epoch = System.nanoTime() / bucketNanos;
+        int idx = (int) Math.floorMod(epoch, (long) Buckets);
+        Bucket bucket = buckets.get(idx);
+        while (bucket == null || bucket.epoch != epoch) {
+            Bucket next = new Bucket(epoch);
+            if (buckets.compareAndSet(idx, bucket, next)) {
+                bucket = next;
+            } else {
+                bucket = buckets.get(idx);
+            }
+        }
+        Stat stat = bucket.stats.get(id);
+        if (stat == null) {
+            if (MaxIdsPerBucket <= bucket.stats.size()) {
+                return;
+            }
+            stat = bucket.stats.computeIfAbsent(id, k -> new Stat());
+        }
+        stat.count.increment();
+        stat.waitNanos.add(nanos);
+    }
+
+    /** Returns the IDs with the longest total wait within the window. */
+    public List<Contention> top(int limit) {
+        long current = System.nanoTime() / bucketNanos;
+        Map<Serializable, long[]> merged = new HashMap<>();
+        for (int i = 0; i < Buckets; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket == null || Buckets <= current - bucket.epoch) {
+                continue;
+            }
+            bucket.stats.forEach((id, stat) -> {
+                long[] v = merged.computeIfAbsent(id, k -> new long[2]);
+                v[0] += stat.count.sum();
+                v[1] += stat.waitNanos.sum();
+            });
+        }
+        return merged.entrySet().stream()
+                .map(e -> new Contention(e.getKey(), e.getValue()[0],
+                        TimeUnit.NANOSECONDS.toMillis(e.getValue()[1])))
+                .sorted(Comparator.comparingLong(Contention::waitMillis).reversed()
+                        .thenComparing(Comparator.comparingLong(Contention::count).reversed()))
+                .limit(limit)
+                .toList();
+    }
+
+    /** Contention of an ID within the window. */
+    public static record Contention(Serializable id, long count, long waitMillis) {
+    }
+
+    private static class Bucket {
+        final long epoch;
+        final ConcurrentHashMap<Serializable, Stat> stats = new ConcurrentHashMap<>();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private static class Stat {
+        final LongAdder count = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+    }
+
+}
@@ -0,0 +1,31 @@
+package sample.context.lock;
+
+import java.io.Serializable;
+import java.time.Duration;
+
+import lombok.Getter;
+
+/**
+ * Expresses that an ID lock could not be acquired within the timeout.
+ * <p>
+ * Unlike InvocationException, the caller may simply retry after a while.
+ */
+@Getter
+public class IdLockTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Serializable id;
+    private final Duration timeout;
+
+    public IdLockTimeoutException(Serializable id, Duration timeout) {
+        super("Timed out waiting for the ID lock. [" + id + ", " + timeout + "]");
+        this.id = id;
+        this.timeout = timeout;
+    }
+
+    public static IdLockTimeoutException of(Serializable id, Duration timeout) {
+        return new IdLockTimeoutException(id, timeout);
+    }
+
+}
@@ -0,0 +1,232 @@
+package sample.context.lock;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ErrorKeys;
+import sample.context.InvocationException;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+
+/**
+ * Runs ID-scoped tasks on single-threaded shards.
+ * <p>
+ * Tasks are routed by the hash of the ID, so tasks on the same ID run one at a
+ * time in the order they were submitted, without waiting on a lock. The actor
+ * of the caller is bound to the shard thread while the task runs.
+ * <p>
+ * When disabled, tasks run in the caller thread and the returned future is
+ * already completed.
+ * <p>
+ * The following meters are registered.
+ * <ul>
+ * <li>idshard.queue: tasks waiting per shard (tag "shard")
+ * <li>idshard.wait: time from submission to start
+ * <li>idshard.execute: time the task ran
+ * </ul>
+ * low: Tasks on the same shard also serialize IDs that merely share the shard,
+ * so a slow task delays the others. Processes that are not routed here still
+ * take the ID lock, so tasks should keep taking it as well. (it is uncontended
+ * among tasks of the same shard)
+ */
+@Slf4j
+public class IdShardExecutor implements AutoCloseable {
+    private final ThreadPoolExecutor[] shards;
+    private final Timer waitTimer;
+    private final Timer executeTimer;
+
+    /** Creates a disabled executor that runs tasks in the caller thread. */
+    public IdShardExecutor(MeterRegistry registry) {
+        this(registry, 0, 0, Backpressure.ABORT, null);
+    }
+
+    /**
+     * @param shards        number of shards. (disabled when 0)
+     * @param queueCapacity tasks that may wait per shard
+     * @param backpressure  behavior when the queue of the shard is full
+     * @param blockTimeout  time to wait for the queue with BLOCK
+     */
+    public IdShardExecutor(MeterRegistry registry, int shards, int queueCapacity,
+            Backpressure backpressure, Duration blockTimeout) {
+        this.shards = new ThreadPoolExecutor[shards];
+        this.waitTimer = Timer.builder("idshard.wait")
+                .description("Time tasks waited in the shard queue").register(registry);
+        this.executeTimer = Timer.builder("idshard.execute")
+                .description("Time tasks ran on the shard").register(registry);
+        for (int i = 0; i < shards; i++) {
+            String name = "idshard-" + i;
+            var executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    r -> new Thread(r, name),
+                    backpressure.handler(blockTimeout));
+            // the shard thread takes the tasks put straight into the queue.
+            executor.prestartAllCoreThreads();
+            this.shards[i] = executor;
+            Gauge.builder("idshard.queue", executor, v -> v.getQueue().size()).tag("shard", String.valueOf(i))
+                    .description("Number of tasks waiting on the shard").register(registry);
+        }
+    }
+
+    public boolean enabled() {
+        return 0 < shards.length;
+    }
+
+    /**
+     * Runs the task on the shard of the ID.
+     * <p>
+     * RejectedExecutionException is thrown when the shard cannot accept the task.
+     */
+    public <T> CompletableFuture<T> submit(Serializable id, Supplier<T> task) {
+        if (!enabled()) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        var future = new CompletableFuture<T>();
+        shards[shard(id)].execute(command(task, future));
+        return future;
+    }
+
+    /** Runs the task on the shard of the ID. */
+    public CompletableFuture<Void> submit(Serializable id, Runnable command) {
+        return submit(id, () -> {
+            command.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the task on the shard of the ID, waiting for room in the queue however
+     * long it takes, whatever the backpressure.
+     * <p>
+     * For batches, which had rather wait for the shards than fail halfway.
+     * RejectedExecutionException is thrown only once closed.
+     */
+    public CompletableFuture<Void> put(Serializable id, Runnable command) {
+        Supplier<Void> task = () -> {
+            command.run();
+            return null;
+        };
+        if (!enabled()) {
+            return submit(id, task);
+        }
+        ThreadPoolExecutor shard = shards[shard(id)];
+        if (shard.isShutdown()) {
+            throw new RejectedExecutionException("The shard is closed.");
+        }
+        var future = new CompletableFuture<Void>();
+        try {
+            shard.getQueue().put(command(task, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+        return future;
+    }
+
+    private <T> Runnable command(Supplier<T> task, CompletableFuture<T> future) {
+        Actor actor = ActorSession.actor();
+        long submitted = System.nanoTime();
+        return () -> {
+            long start = System.nanoTime();
+            waitTimer.record(start - submitted, TimeUnit.NANOSECONDS);
+            ActorSession.bind(actor);
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                ActorSession.unbind();
+                executeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private int shard(Serializable id) {
+        int h = id.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    /**
+     * Waits for the task and returns its result.
+     * <p>
+     * A RuntimeException of the task is rethrown as it is, so that callers see the
+     * same exceptions as when the task runs in their own thread.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw InvocationException.of(ErrorKeys.Exception, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw InvocationException.of(ErrorKeys.Exception, e.getCause());
+        }
+    }
+
+    /** Stops accepting tasks and waits for the queued tasks. */
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        for (ThreadPoolExecutor shard : shards) {
+            try {
+                if (!shard.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Shard tasks did not finish in time. [" + shard.getQueue().size() + "]");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Behavior when the queue of a shard is full.
+     * <p>
+     * Running the task in the caller thread is not offered, since it would run
+     * beside the shard thread and break the serialization per ID.
+     */
+    public static enum Backpressure {
+        /** Rejects the task at once. */
+        ABORT,
+        /** Waits for the queue up to the block timeout, then rejects the task. */
+        BLOCK;
+
+        RejectedExecutionHandler handler(Duration blockTimeout) {
+            if (this == ABORT) {
+                return new ThreadPoolExecutor.AbortPolicy();
+            }
+            long timeout = blockTimeout != null ? blockTimeout.toNanos() : Long.MAX_VALUE;
+            return (r, executor) -> {
+                try {
+                    if (executor.isShutdown()
+                            || !executor.getQueue().offer(r, timeout, TimeUnit.NANOSECONDS)) {
+                        throw new RejectedExecutionException("The shard queue is full.");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException(e);
+                }
+            };
+        }
+    }
+
+}
@@ -7,9 +7,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -17,19 +18,37 @@ import org.apache.commons.lang3.StringUtils;
  * Builder for simple JPQL generation.
  * <p>
  * Specialize in dynamic condition generation of conditional clauses.
+ * <p>
+ * The conditions are kept as their fields and operators, and the argument
+ * numbers are assigned when the JPQL is generated. The generated JPQL is cached
+ * by this shape, i.e. the base JPQL and the conditions, group by and order by
+ * that were assigned, so a search with the same optional conditions reuses both
+ * the JPQL and the query plan of Hibernate keyed by it.
+ * low: Values must be passed as arguments and never embedded in the clauses,
+ * or each value makes a shape of its own. (at most MaxShapes are cached)
  */
 public class JpqlBuilder {
-    private final StringBuilder jpql;
-    private final AtomicInteger index;
-    private final List<String> conditions = new ArrayList<>();
+    public static final int MaxShapes = 2000;
+    private static final Map<Shape, String> shapes = new ConcurrentHashMap<>();
+    private static final LongAdder shapeHits = new LongAdder();
+    private static final LongAdder shapeMisses = new LongAdder();
+
+    private static final String Raw = "RAW";
+    private static final String Custom = "CUSTOM";
+    private static final String LikeAny = "LIKE_ANY";
+    private static final String Between = "BETWEEN";
+
+    private final String baseJpql;
+    private final int fromIndex;
+    private final List<Condition> conditions = new ArrayList<>();
     private final List<Object> reservedArgs = new ArrayList<>();
     private final List<Object> args = new ArrayList<>();
     private Optional<String> groupBy = Optional.empty();
     private Optional<String> orderBy = Optional.empty();
 
     public JpqlBuilder(String baseJpql, int fromIndex) {
-        this.jpql = new StringBuilder(baseJpql);
-        this.index = new AtomicInteger(fromIndex);
+        this.baseJpql = baseJpql;
+        this.fromIndex = fromIndex;
     }
 
     public JpqlBuilder(String baseJpql, String staticCondition, int fromIndex) {
@@ -45,13 +64,7 @@ public class JpqlBuilder {
      */
     public JpqlBuilder condition(String condition, Object... values) {
         if (StringUtils.isNotBlank(condition)) {
-            int count = StringUtils.countMatches(condition, '?');
-            Object[] indexes = new Object[count];
-            for (int i = 0; i < count; i++) {
-                indexes[i] = index.getAndIncrement();
-            }
-            String c = condition.replace("?", "?%d");
-            conditions.add(String.format(c, indexes));
+            conditions.add(new Condition(Custom, condition));
             if (values != null) {
                 args.addAll(Arrays.asList(values));
             }
@@ -61,7 +74,7 @@ public class JpqlBuilder {
 
     private JpqlBuilder add(String condition) {
         if (StringUtils.isNotBlank(condition)) {
-            this.conditions.add(condition);
+            this.conditions.add(new Condition(Raw, condition));
         }
         return this;
     }
@@ -75,15 +88,13 @@ public class JpqlBuilder {
 
     /** Assigns a match condition. (If the value is null, it is ignored.) */
     public JpqlBuilder equal(String field, Object value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s = ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " = ", value);
     }
 
-    private JpqlBuilder ifValid(Object value, Runnable command) {
+    private JpqlBuilder compare(String field, String operator, Object value) {
         if (isValid(value)) {
-            command.run();
+            conditions.add(new Condition(operator, field));
+            args.add(value);
         }
         return this;
     }
@@ -104,18 +115,12 @@ public class JpqlBuilder {
 
     /** Assigns a mismatch condition. (If the value is null, it is ignored.) */
     public JpqlBuilder equalNot(String field, Object value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s != ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " != ", value);
     }
 
     /** Assigns a like condition. (If the value is null, it is ignored.) */
     public JpqlBuilder like(String field, String value, OrmMatchMode mode) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s LIKE ?%d", field, index.getAndIncrement()));
-            args.add(mode.toMatchString(value));
-        });
+        return compare(field, " LIKE ", isValid(value) ? mode.toMatchString(value) : null);
     }
 
     /**
@@ -123,38 +128,34 @@ public class JpqlBuilder {
      * is null)
      */
     public JpqlBuilder like(List<String> fields, String value, OrmMatchMode mode) {
-        return ifValid(value, () -> {
-            StringBuilder condition = new StringBuilder("(");
-            for (String field : fields) {
-                if (condition.length() != 1) {
-                    condition.append(" OR ");
-                }
-                condition.append(String.format("(%s LIKE ?%d)", field, index.getAndIncrement()));
-                args.add(mode.toMatchString(value));
+        if (isValid(value)) {
+            conditions.add(new Condition(LikeAny, fields));
+            String match = mode.toMatchString(value);
+            for (int i = 0; i < fields.size(); i++) {
+                args.add(match);
             }
-            condition.append(")");
-            conditions.add(condition.toString());
-        });
+        }
+        return this;
     }
 
     /** Grant the in condition. */
     public JpqlBuilder in(String field, Collection<?> values) {
-        return ifValid(values, () -> {
-            conditions.add(String.format("%s IN ?%d", field, index.getAndIncrement()));
-            args.add(values);
-        });
+        return compare(field, " IN ", values);
     }
 
     /** Grant the BETWEEN condition. */
     public JpqlBuilder between(String field, Date from, Date to) {
-        if (from != null && to != null) {
-            conditions.add(String.format(
-                    "%s BETWEEN ?%d AND ?%d", field, index.getAndIncrement(), index.getAndIncrement()));
+        return betweenValid(field, from, to);
+    }
+
+    private JpqlBuilder betweenValid(String field, Object from, Object to) {
+        if (isValid(from) && isValid(to)) {
+            conditions.add(new Condition(Between, field));
             args.add(from);
             args.add(to);
-        } else if (from != null) {
+        } else if (isValid(from)) {
             gte(field, from);
-        } else if (to != null) {
+        } else if (isValid(to)) {
             lte(field, to);
         }
         return this;
@@ -162,94 +163,61 @@ public class JpqlBuilder {
 
     /** Grant the BETWEEN condition. */
     public JpqlBuilder between(String field, LocalDate from, LocalDate to) {
-        if (from != null && to != null) {
-            conditions.add(String.format(
-                    "%s BETWEEN ?%d AND ?%d", field, index.getAndIncrement(), index.getAndIncrement()));
-            args.add(from);
-            args.add(to);
-        } else if (from != null) {
-            gte(field, from);
-        } else if (to != null) {
-            lte(field, to);
-        }
-        return this;
+        return betweenValid(field, from, to);
     }
 
     /** Grant the BETWEEN condition. */
     public JpqlBuilder between(String field, Number from, Number to) {
-        if (from != null && to != null) {
-            conditions.add(String.format(
-                    "%s BETWEEN ?%d AND ?%d", field, index.getAndIncrement(), index.getAndIncrement()));
-            args.add(from);
-            args.add(to);
-        } else if (from != null) {
-            gte(field, from);
-        } else if (to != null) {
-            lte(field, to);
-        }
-        return this;
+        return betweenValid(field, from, to);
     }
 
     /** Grant the BETWEEN condition. */
     public JpqlBuilder between(String field, LocalDateTime from, LocalDateTime to) {
-        if (from != null && to != null) {
-            conditions.add(String.format(
-                    "%s BETWEEN ?%d AND ?%d", field, index.getAndIncrement(), index.getAndIncrement()));
-            args.add(from);
-            args.add(to);
-        } else if (from != null) {
-            gte(field, from);
-        } else if (to != null) {
-            lte(field, to);
-        }
-        return this;
+        return betweenValid(field, from, to);
     }
 
     /** Grant the BETWEEN condition. */
     public JpqlBuilder between(String field, String from, String to) {
-        if (isValid(from) && isValid(to)) {
-            conditions.add(String.format(
-                    "%s BETWEEN ?%d AND ?%d", field, index.getAndIncrement(), index.getAndIncrement()));
-            args.add(from);
-            args.add(to);
-        } else if (isValid(from)) {
-            gte(field, from);
-        } else if (isValid(to)) {
-            lte(field, to);
-        }
-        return this;
+        return betweenValid(field, from, to);
     }
 
     /** [field]&gt;=[value] Assigns a condition. (Ignored if value is null) */
     public <Y> JpqlBuilder gte(String field, final Y value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s >= ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " >= ", value);
     }
 
     /** [field]&gt;[value] Assigns a condition. (Ignored if value is null) */
     public <Y> JpqlBuilder gt(String field, final Y value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s > ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " > ", value);
     }
 
     /** [field]&lt;=[value] Assigns a condition. */
     public <Y> JpqlBuilder lte(String field, final Y value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s <= ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " <= ", value);
     }
 
     /** [field]&lt;=[value] Assigns a condition. */
     public <Y> JpqlBuilder lt(String field, final Y value) {
-        return ifValid(value, () -> {
-            conditions.add(String.format("%s < ?%d", field, index.getAndIncrement()));
-            args.add(value);
-        });
+        return compare(field, " < ", value);
+    }
+
+    /**
+     * Assigns the keyset condition that seeks the rows after the position, along
+     * with the order by clause of the keyset. (The condition is ignored if the
+     * position is null)
+     * <p>
+     * The ID field breaks ties of the sort field, so it must be unique.
+     */
+    public JpqlBuilder seek(String sortField, String idField, boolean descending, Keyset after) {
+        String direction = descending ? " DESC" : "";
+        orderBy(sortField + direction + ", " + idField + direction);
+        if (after == null) {
+            return this;
+        }
+        String op = descending ? " < " : " > ";
+        return condition(
+                "(" + sortField + op + "? OR (" + sortField + " = ? AND " + idField + op + "?))",
+                after.sortKey(), after.sortKey(), after.id());
     }
 
     /** group by Grants a conditional clause. */
@@ -266,19 +234,30 @@ public class JpqlBuilder {
 
     /** Generate JPQL. */
     public String build() {
-        StringBuilder jpql = new StringBuilder(this.jpql.toString());
-        if (!conditions.isEmpty()) {
-            jpql.append(" WHERE ");
-            AtomicBoolean first = new AtomicBoolean(true);
-            conditions.forEach(condition -> {
-                if (!first.getAndSet(false)) {
-                    jpql.append(" AND ");
-                }
-                jpql.append(condition);
-            });
+        var shape = new Shape(baseJpql, fromIndex, conditions, groupBy.orElse(null), orderBy.orElse(null));
+        String jpql = shapes.get(shape);
+        if (jpql != null) {
+            shapeHits.increment();
+            return jpql;
         }
-        groupBy.ifPresent(v -> jpql.append(" GROUP BY " + v));
-        orderBy.ifPresent(v -> jpql.append(" ORDER BY " + v));
+        shapeMisses.increment();
+        jpql = render();
+        if (shapes.size() < MaxShapes) {
+            shapes.put(new Shape(baseJpql, fromIndex, List.copyOf(conditions),
+                    shape.groupBy(), shape.orderBy()), jpql);
+        }
+        return jpql;
+    }
+
+    private String render() {
+        StringBuilder jpql = new StringBuilder(baseJpql);
+        int index = fromIndex;
+        for (int i = 0; i < conditions.size(); i++) {
+            jpql.append(i == 0 ? " WHERE " : " AND ");
+            index = conditions.get(i).render(jpql, index);
+        }
+        groupBy.ifPresent(v -> jpql.append(" GROUP BY ").append(v));
+        orderBy.ifPresent(v -> jpql.append(" ORDER BY ").append(v));
         return jpql.toString();
     }
 
@@ -346,4 +325,58 @@ public class JpqlBuilder {
         return new JpqlBuilder(baseJpql, staticCondition, fromIndex).reservedArgs(args);
     }
 
+    /** Returns the statistics of the JPQL cached by shape. */
+    public static ShapeStats shapeStats() {
+        return new ShapeStats(shapes.size(), shapeHits.sum(), shapeMisses.sum());
+    }
+
+    /** Statistics of the JPQL cached by shape. */
+    public static record ShapeStats(int shapes, long hits, long misses) {
+    }
+
+    /** The conditions, group by and order by that decide the JPQL. */
+    private static record Shape(
+            String baseJpql, int fromIndex, List<Condition> conditions, String groupBy, String orderBy) {
+    }
+
+    /**
+     * A condition clause of a field and an operator.
+     * <p>
+     * Raw and Custom take the clause itself as the field. (Custom numbers each ?)
+     * LikeAny takes the list of fields. The other operators are put between the
+     * field and the argument.
+     */
+    private static record Condition(String operator, Object field) {
+        int render(StringBuilder jpql, int index) {
+            switch (operator) {
+                case Raw -> jpql.append(field);
+                case Custom -> {
+                    String clause = (String) field;
+                    for (int i = 0; i < clause.length(); i++) {
+                        char c = clause.charAt(i);
+                        jpql.append(c);
+                        if (c == '?') {
+                            jpql.append(index++);
+                        }
+                    }
+                }
+                case LikeAny -> {
+                    jpql.append('(');
+                    List<?> fields = (List<?>) field;
+                    for (int i = 0; i < fields.size(); i++) {
+                        if (0 < i) {
+                            jpql.append(" OR ");
+                        }
+                        jpql.append('(').append(fields.get(i)).append(" LIKE ?").append(index++).append(')');
+                    }
+                    jpql.append(')');
+                }
+                case Between -> jpql.append(field)
+                        .append(" BETWEEN ?").append(index++).append(" AND ?").append(index++);
+                default -> jpql.append(field).append(operator).append('?').append(index++);
+            }
+            return index;
+        }
+    }
+
 }
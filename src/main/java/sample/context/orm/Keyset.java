@@ -0,0 +1,50 @@
+package sample.context.orm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+
+import sample.context.ErrorKeys;
+import sample.context.ValidationException;
+
+/**
+ * Position of a keyset page: the sort key and the ID of the last row read.
+ * <p>
+ * The ID breaks ties of the sort key, so the position stays unique when several
+ * rows share the same sort key. It is handed to clients as an opaque cursor
+ * string.
+ */
+public record Keyset(Object sortKey, Long id) {
+
+    /** Returns the cursor string of the position. */
+    public String encode() {
+        String v = sortKey + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(v.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the position of the cursor. (empty when the cursor is blank, i.e.
+     * the first page)
+     * <p>
+     * ValidationException is thrown when the cursor cannot be read.
+     *
+     * @param sortKeyParser converts the string form of the sort key
+     */
+    public static Optional<Keyset> decode(String cursor, Function<String, ?> sortKeyParser) {
+        if (StringUtils.isBlank(cursor)) {
+            return Optional.empty();
+        }
+        try {
+            String v = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idx = v.lastIndexOf(',');
+            return Optional.of(new Keyset(
+                    sortKeyParser.apply(v.substring(0, idx)), Long.valueOf(v.substring(idx + 1))));
+        } catch (RuntimeException e) {
+            throw new ValidationException("cursor", ErrorKeys.Cursor);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package sample.context.orm;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+/**
+ * A page read by keyset, with the cursor of the next page.
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final String nextCursor;
+
+    public KeysetSlice(List<T> content, int size, boolean hasNext, String nextCursor) {
+        super(content, PageRequest.ofSize(size), hasNext);
+        this.nextCursor = nextCursor;
+    }
+
+    /** Returns the cursor of the next page. (null when this is the last page) */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+}
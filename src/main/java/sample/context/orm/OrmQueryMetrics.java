@@ -0,0 +1,44 @@
+package sample.context.orm;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Exposes the statistics of the JPQL cached by shape and of the query plan
+ * cache of Hibernate.
+ * <p>
+ * The following meters are registered.
+ * <ul>
+ * <li>orm.jpql.shape: JPQL built by JpqlBuilder (tag "result" of hit/miss)
+ * <li>orm.jpql.shape.size: shapes cached
+ * <li>orm.query.plan: interpretations of JPQL (tag "result" of hit/miss)
+ * </ul>
+ * low: Hibernate counts the query plans only with hibernate.generate_statistics.
+ */
+@RequiredArgsConstructor
+public class OrmQueryMetrics implements MeterBinder {
+    private final SessionFactory sessionFactory;
+
+    /** {@inheritDoc} */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("orm.jpql.shape", this, v -> JpqlBuilder.shapeStats().hits())
+                .tag("result", "hit").description("JPQL built by JpqlBuilder").register(registry);
+        FunctionCounter.builder("orm.jpql.shape", this, v -> JpqlBuilder.shapeStats().misses())
+                .tag("result", "miss").description("JPQL built by JpqlBuilder").register(registry);
+        Gauge.builder("orm.jpql.shape.size", this, v -> JpqlBuilder.shapeStats().shapes())
+                .description("Shapes of JPQL cached").register(registry);
+        Statistics stats = sessionFactory.getStatistics();
+        FunctionCounter.builder("orm.query.plan", stats, Statistics::getQueryPlanCacheHitCount)
+                .tag("result", "hit").description("Interpretations of JPQL").register(registry);
+        FunctionCounter.builder("orm.query.plan", stats, Statistics::getQueryPlanCacheMissCount)
+                .tag("result", "miss").description("Interpretations of JPQL").register(registry);
+    }
+
+}
@@ -1,7 +1,14 @@
 package sample.context.orm;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
@@ -26,6 +33,9 @@ import sample.context.ValidationException;
  */
 @RequiredArgsConstructor
 public abstract class OrmRepository implements GenericRepository {
+    /** Entities written per JDBC batch by saveAll / updateAll. */
+    public static final int BatchSize = 50;
+
     private final DomainHelper dh;
     private final OrmInterceptor interceptor;
 
@@ -64,10 +74,7 @@ public abstract class OrmRepository implements GenericRepository {
     /** {@inheritDoc} */
     @Override
     public <T extends DomainEntity> Optional<T> get(Class<T> clazz, Object id) {
-        T m = em().find(clazz, id);
-        if (m != null)
-            m.hashCode(); // force loading
-        return Optional.ofNullable(m);
+        return Optional.ofNullable(em().find(clazz, id));
     }
 
     /** {@inheritDoc} */
@@ -75,7 +82,7 @@ public abstract class OrmRepository implements GenericRepository {
     public <T extends DomainEntity> T load(Class<T> clazz, Object id) {
         try {
             T m = em().getReference(clazz, id);
-            m.hashCode(); // force loading
+            Hibernate.initialize(m); // force loading (nothing to do when already loaded)
             return m;
         } catch (EntityNotFoundException e) {
             throw ValidationException.of(ErrorKeys.EntityNotFound, new String[] { clazz.getSimpleName() + "-" + id });
@@ -89,7 +96,6 @@ public abstract class OrmRepository implements GenericRepository {
         if (m == null) {
             throw ValidationException.of(ErrorKeys.EntityNotFound, new String[] { clazz.getSimpleName() + "-" + id });
         }
-        m.hashCode(); // force loading
         return m;
     }
 
@@ -105,6 +111,15 @@ public abstract class OrmRepository implements GenericRepository {
         return tmpl().find("SELECT m FROM " + clazz.getSimpleName() + " m");
     }
 
+    /**
+     * Streams all the entities of the class. (see {@link OrmTemplate#stream})
+     * <p>
+     * Use it instead of findAll when the table may be large.
+     */
+    public <T extends DomainEntity> Stream<T> streamAll(Class<T> clazz, int fetchSize) {
+        return tmpl().stream("SELECT m FROM " + clazz.getSimpleName() + " m", fetchSize);
+    }
+
     /** {@inheritDoc} */
     @Override
     public <T extends DomainEntity> T save(T entity) {
@@ -127,6 +142,55 @@ public abstract class OrmRepository implements GenericRepository {
         return em().merge(entity);
     }
 
+    /**
+     * Registers the entities in JDBC batches.
+     * <p>
+     * The entities are flushed every BatchSize entities, and the flushed ones are
+     * detached so that memory stays flat. The caller's other entities remain
+     * managed. Entities with a pooled sequence (allocationSize &gt; 1) take their
+     * IDs without a round trip per row.
+     */
+    public <T extends DomainEntity> List<T> saveAll(Collection<T> entities) {
+        return batch(entities, this::save);
+    }
+
+    /**
+     * Updates the entities in JDBC batches.
+     * <p>
+     * The entities are flushed every BatchSize entities, and the returned entities
+     * are detached.
+     */
+    public <T extends DomainEntity> List<T> updateAll(Collection<T> entities) {
+        return batch(entities, this::update);
+    }
+
+    private <T extends DomainEntity> List<T> batch(Collection<T> entities, UnaryOperator<T> write) {
+        Session session = em().unwrap(Session.class);
+        Integer batchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(BatchSize);
+        try {
+            var result = new ArrayList<T>(entities.size());
+            var chunk = new ArrayList<T>(BatchSize);
+            for (T entity : entities) {
+                chunk.add(write.apply(entity));
+                if (chunk.size() == BatchSize) {
+                    flushAndDetach(chunk, result);
+                }
+            }
+            flushAndDetach(chunk, result);
+            return result;
+        } finally {
+            session.setJdbcBatchSize(batchSize);
+        }
+    }
+
+    private <T extends DomainEntity> void flushAndDetach(List<T> chunk, List<T> result) {
+        em().flush();
+        chunk.forEach(em()::detach);
+        result.addAll(chunk);
+        chunk.clear();
+    }
+
     /** {@inheritDoc} */
     @Override
     public <T extends DomainEntity> T delete(T entity) {
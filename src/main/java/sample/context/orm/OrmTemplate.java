@@ -1,20 +1,35 @@
 package sample.context.orm;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.hibernate.jpa.HibernateHints;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 import jakarta.persistence.StoredProcedureQuery;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import sample.context.ErrorKeys;
+import sample.context.InvocationException;
 import sample.context.ValidationException;
 
 /**
@@ -24,9 +39,27 @@ import sample.context.ValidationException;
  * If there are any EntityManager methods that you wish to use, add wrap methods
  * as necessary.
  */
-@RequiredArgsConstructor(staticName = "of")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class OrmTemplate {
     private final EntityManager em;
+    private final boolean cacheable;
+
+    public static OrmTemplate of(EntityManager em) {
+        return new OrmTemplate(em, false);
+    }
+
+    /**
+     * Returns a template whose queries are kept in the query cache.
+     * <p>
+     * Use it for lookups of master data that rarely change. A cached result is
+     * invalidated whenever one of the tables it read is updated, and the entities
+     * of the result are read from the second-level cache of their class.
+     * low: Without the second-level cache of the entity, each entity of a cached
+     * result is read by ID one at a time, which costs more than the query itself.
+     */
+    public OrmTemplate cacheable() {
+        return new OrmTemplate(em, true);
+    }
 
     /** Returns the ID value of the specified entity. */
     public <T> Object idValue(T entity) {
@@ -68,17 +101,141 @@ public class OrmTemplate {
     }
 
     /**
-     * Paging search in JPQL.
+     * Search by JPQL into records.
+     * <p>
+     * The rows are built by a constructor expression, so only the columns of the
+     * record are read and nothing enters the persistence context. When the JPQL
+     * starts with the from clause, the select clause is generated from the
+     * components of the record. (see {@link OrmUtils#selectNew})
+     * <p>
+     * When Map is specified in args, it is treated as a named argument. (The key of
+     * Map must be a string.)
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Record> List<R> findAs(Class<R> type, String qlString, final Object... args) {
+        return bindArgs(em.createQuery(OrmUtils.selectNew(type, qlString), type), args).getResultList();
+    }
+
+    /**
+     * Search by JPQL, returning at most maxResults rows. (no count query is issued)
+     * <p>
+     * When Map is specified in args, it is treated as a named argument. (The key of
+     * Map must be a string.)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findFirst(String qlString, int maxResults, final Object... args) {
+        return bindArgs(em.createQuery(qlString), args).setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * Streams the result of JPQL through a DB cursor.
+     * <p>
+     * Rows are fetched fetchSize at a time. Before the row after each fetchSize
+     * rows is read, the persistence context is flushed and cleared, so memory
+     * stays flat however many rows there are. An entity passed on is managed
+     * while it is consumed, and its changes are written at the next flush; do not
+     * keep it beyond the stream, since it is detached afterwards.
+     * <p>
+     * A transaction is required, since the cursor is only kept within it. (and
+     * PostgreSQL honors the fetch size only outside autocommit) Close the stream
+     * after use; it is closed at the end of the transaction otherwise.
      * <p>
      * When Map is specified in args, it is treated as a named argument. (The key of
      * Map must be a string.)
      */
     @SuppressWarnings("unchecked")
+    public <T> Stream<T> stream(String qlString, int fetchSize, final Object... args) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new InvocationException("Streaming a query requires an active transaction.");
+        }
+        Query query = bindArgs(em.createQuery(qlString), args)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        Stream<T> results = (Stream<T>) query.getResultStream();
+        Iterator<T> it = results.iterator();
+        var rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private long read;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                // The previous row has been consumed, so the context is cleared only now.
+                if (0 < read && read % fetchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+                if (!it.hasNext()) {
+                    return false;
+                }
+                read++;
+                action.accept(it.next());
+                return true;
+            }
+        };
+        Stream<T> stream = StreamSupport.stream(rows, false).onClose(results::close);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCompletion() {
+                stream.close();
+            }
+        });
+        return stream;
+    }
+
+    /**
+     * Paging search in JPQL.
+     * <p>
+     * The count query is skipped when the total is evident from the page, i.e. on
+     * a first page that is not full or on the last page.
+     * <p>
+     * When Map is specified in args, it is treated as a named argument. (The key of
+     * Map must be a string.)
+     */
+    @SuppressWarnings({ "unchecked", "deprecation" })
     public <T> Page<T> find(String qlString, final Pageable page, final Object... args) {
-        @SuppressWarnings("deprecation")
-        long total = load(QueryUtils.createCountQueryFor(qlString), args);
         List<T> list = bindArgs(em.createQuery(qlString), page, args).getResultList();
-        return new PageImpl<>(list, page, total);
+        return PageableExecutionUtils.getPage(
+                list, page, () -> load(QueryUtils.createCountQueryFor(qlString), args));
+    }
+
+    /**
+     * Paging search in JPQL without the total count.
+     * <p>
+     * Reads one more row than the page size to tell whether a next page exists.
+     * low: The rows before the page are still skipped by OFFSET, so use
+     * findKeyset for deep pages.
+     * <p>
+     * When Map is specified in args, it is treated as a named argument. (The key of
+     * Map must be a string.)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Slice<T> findSlice(String qlString, final Pageable page, final Object... args) {
+        List<T> list = bindArgs(em.createQuery(qlString), page, args)
+                .setMaxResults(page.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = page.getPageSize() < list.size();
+        return new SliceImpl<>(hasNext ? list.subList(0, page.getPageSize()) : list, page, hasNext);
+    }
+
+    /**
+     * Keyset paging search in JPQL.
+     * <p>
+     * The query must order the rows by the keyset and seek after the cursor (see
+     * {@link JpqlBuilder#seek}), so each page reads only its own rows however deep
+     * it is. Reads one more row than the size to tell whether a next page exists,
+     * and no count query is issued.
+     * <p>
+     * When Map is specified in args, it is treated as a named argument. (The key of
+     * Map must be a string.)
+     *
+     * @param keyset returns the position of a row
+     */
+    public <T> KeysetSlice<T> findKeyset(
+            String qlString, int size, Function<T, Keyset> keyset, final Object... args) {
+        List<T> list = findFirst(qlString, size + 1, args);
+        if (list.size() <= size) {
+            return new KeysetSlice<>(list, size, false, null);
+        }
+        List<T> content = list.subList(0, size);
+        return new KeysetSlice<>(content, size, true, keyset.apply(content.get(size - 1)).encode());
     }
 
     /**
@@ -272,6 +429,9 @@ public class OrmTemplate {
     }
 
     public Query bindArgs(final Query query, final Pageable page, final Object... args) {
+        if (cacheable) {
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
+        }
         Optional.ofNullable(page).ifPresent((pg) -> {
             if (page.getPageNumber() > 0) {
                 query.setFirstResult((int) page.getOffset());
@@ -1,5 +1,10 @@
 package sample.context.orm;
 
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 
@@ -9,6 +14,8 @@ import jakarta.persistence.EntityManager;
  * Orm related utilities.
  */
 public abstract class OrmUtils {
+    private static final Pattern FromAlias = Pattern.compile(
+            "^\\s*FROM\\s+[\\w.]+\\s+(?:AS\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
 
     /** Returns entity information for the specified class (including ID concept) */
     @SuppressWarnings("unchecked")
@@ -16,4 +23,26 @@ public abstract class OrmUtils {
         return (JpaEntityInformation<T, Object>) JpaEntityInformationSupport.getEntityInformation(clazz, em);
     }
 
+    /**
+     * Returns the JPQL with a constructor expression of the record as its select
+     * clause, when the JPQL starts with the from clause.
+     * <p>
+     * e.g. "FROM CashInOut cio WHERE ..." becomes
+     * "SELECT NEW x.Record(cio.a, cio.b) FROM CashInOut cio WHERE ...", where a
+     * and b are the components of the record. So the components must be named
+     * after the attributes of the entity of the first alias. A JPQL with its own
+     * select clause is returned as it is.
+     */
+    public static String selectNew(Class<? extends Record> type, String qlString) {
+        Matcher m = FromAlias.matcher(qlString);
+        if (!m.find()) {
+            return qlString;
+        }
+        String alias = m.group(1);
+        String args = Arrays.stream(type.getRecordComponents())
+                .map(v -> alias + "." + v.getName())
+                .collect(Collectors.joining(", "));
+        return "SELECT NEW " + type.getName() + "(" + args + ") " + qlString.stripLeading();
+    }
+
 }
@@ -0,0 +1,226 @@
+package sample.context.orm;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+
+/**
+ * Routes read-only transactions to replica databases.
+ * <p>
+ * The physical connection is obtained at the first statement, when the
+ * read-only flag of the transaction is known. (see
+ * LazyConnectionDataSourceProxy) Read-only transactions, i.e. TxTemplate
+ * readOnly() and {@code @Transactional(readOnly = true)}, read from the
+ * replicas in turn, and the others use the primary.
+ * <p>
+ * Read-only transactions still use the primary in the following cases.
+ * <ul>
+ * <li>the actor wrote to the primary within the read-your-writes window, so
+ * that the actor sees its own writes despite the replication lag
+ * <li>no replica is available. A replica that fails to connect is left out
+ * for the retry interval.
+ * </ul>
+ * Reads that must see the latest commits, e.g. the coordination of jobs and
+ * the pages of a batch, use a read-write transaction to stay on the primary.
+ * <p>
+ * The following meters are registered.
+ * <ul>
+ * <li>orm.replica.route: read-only connections (tag "route" of
+ * replica/written/unavailable)
+ * <li>orm.replica.available: replicas currently available
+ * </ul>
+ * The replica data sources are closed along with this.
+ * low: Writes are noticed per connection to the primary, so a read-write
+ * transaction that only read also starts the window. The anonymous actor shares
+ * one ID among all guests, so it is not tracked.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+    /** Actors tracked before expired writes are swept. */
+    public static final int MaxWriters = 10_000;
+
+    private final List<Replica> replicas;
+    private final Map<String, Long> writes = new ConcurrentHashMap<>();
+    private final long readYourWritesNanos;
+
+    /**
+     * @param readYourWrites time an actor reads from the primary after a write
+     * @param retryInterval  time a replica that failed is left out
+     */
+    public ReplicaRoutingDataSource(
+            DataSource primary,
+            List<DataSource> replicas,
+            Duration readYourWrites,
+            Duration retryInterval,
+            MeterRegistry registry) {
+        this.replicas = replicas.stream().map(v -> new Replica(v, retryInterval.toNanos())).toList();
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        if (this.replicas.isEmpty()) {
+            setTargetDataSource(primary);
+        } else {
+            setTargetDataSource(new PrimaryDataSource(primary));
+            setReadOnlyDataSource(new ReplicaDataSource(primary, registry));
+        }
+        Gauge.builder("orm.replica.available", this.replicas, v -> v.stream().filter(Replica::available).count())
+                .description("Replicas currently available").register(registry);
+    }
+
+    /** Returns whether the actor wrote within the read-your-writes window. */
+    public boolean written(Actor actor) {
+        Long until = writes.get(actor.id());
+        return until != null && System.nanoTime() - until < 0;
+    }
+
+    private void write(Actor actor) {
+        if (actor.roleType().isAnonymous()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (MaxWriters <= writes.size()) {
+            writes.values().removeIf(until -> until - now <= 0);
+        }
+        writes.put(actor.id(), now + readYourWritesNanos);
+    }
+
+    /** Closes the replica data sources. */
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.ds instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close the replica.", e);
+                }
+            }
+        }
+    }
+
+    /** The primary, remembering the actors that connected to it in a transaction. */
+    private class PrimaryDataSource extends DelegatingDataSource {
+        PrimaryDataSource(DataSource primary) {
+            super(primary);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection con = super.getConnection();
+            // not the connection reading the defaults of the proxy
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                write(ActorSession.actor());
+            }
+            return con;
+        }
+    }
+
+    /** The replicas in turn, falling back to the primary. */
+    private class ReplicaDataSource extends AbstractDataSource {
+        private final DataSource primary;
+        private final AtomicInteger next = new AtomicInteger();
+        private final Counter toReplica;
+        private final Counter toWritten;
+        private final Counter toUnavailable;
+
+        ReplicaDataSource(DataSource primary, MeterRegistry registry) {
+            this.primary = primary;
+            this.toReplica = counter(registry, "replica");
+            this.toWritten = counter(registry, "written");
+            this.toUnavailable = counter(registry, "unavailable");
+        }
+
+        private Counter counter(MeterRegistry registry, String route) {
+            return Counter.builder("orm.replica.route").tag("route", route)
+                    .description("Read-only connections by route").register(registry);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connection(DataSource::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return connection(ds -> ds.getConnection(username, password));
+        }
+
+        private Connection connection(ConnectionSource source) throws SQLException {
+            if (written(ActorSession.actor())) {
+                toWritten.increment();
+                return readOnly(source.get(primary));
+            }
+            int size = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (!replica.available()) {
+                    continue;
+                }
+                try {
+                    Connection con = readOnly(source.get(replica.ds));
+                    toReplica.increment();
+                    return con;
+                } catch (SQLException e) {
+                    replica.fail();
+                    log.warn("The replica is left out for a while. [" + e.getMessage() + "]");
+                }
+            }
+            toUnavailable.increment();
+            return readOnly(source.get(primary));
+        }
+
+        private Connection readOnly(Connection con) throws SQLException {
+            try {
+                con.setReadOnly(true);
+                return con;
+            } catch (SQLException e) {
+                con.close();
+                throw e;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private static interface ConnectionSource {
+        Connection get(DataSource ds) throws SQLException;
+    }
+
+    private static class Replica {
+        final DataSource ds;
+        final long retryNanos;
+        volatile boolean failed;
+        volatile long retryAt;
+
+        Replica(DataSource ds, long retryNanos) {
+            this.ds = ds;
+            this.retryNanos = retryNanos;
+        }
+
+        boolean available() {
+            return !failed || 0 <= System.nanoTime() - retryAt;
+        }
+
+        void fail() {
+            retryAt = System.nanoTime() + retryNanos;
+            failed = true;
+        }
+    }
+
+}
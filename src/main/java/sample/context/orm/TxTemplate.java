@@ -1,6 +1,10 @@
 package sample.context.orm;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -23,7 +27,8 @@ import sample.context.lock.IdLockHandler.LockType;
  */
 public class TxTemplate {
     private Optional<IdLockHandler> idLock = Optional.empty();
-    private Optional<IdLockPair> IdLockPair = Optional.empty();
+    private final List<IdLockPair> idLockPairs = new ArrayList<>();
+    private Duration idLockTimeout;
     private final TransactionTemplate tmpl;
 
     public TxTemplate(PlatformTransactionManager txm) {
@@ -34,7 +39,16 @@ public class TxTemplate {
         return tmpl;
     }
 
-    /** Make it a reference-only transaction. */
+    /**
+     * Make it a reference-only transaction.
+     * <p>
+     * The session loads entities read-only without keeping snapshots for dirty
+     * checking and never flushes, and the JDBC connection is marked read-only.
+     * Changes to loaded entities are discarded, so do not call methods that write
+     * from within.
+     * low: When joining a surrounding read-write transaction, it runs as that
+     * transaction does.
+     */
     public TxTemplate readOnly() {
         this.tmpl.setReadOnly(true);
         return this;
@@ -61,44 +75,79 @@ public class TxTemplate {
     /** Sets the reference lock for the specified ID at the time of transaction */
     public TxTemplate readIdLock(IdLockHandler idLock, Serializable id) {
         Assert.notNull(id, "id is required.");
-        this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.READ));
-        return this;
+        return idLock(idLock, List.of(new IdLockPair(id, LockType.READ)));
+    }
+
+    /**
+     * Sets the optimistic read lock for the specified ID at the time of
+     * transaction.
+     * <p>
+     * The transaction runs without blocking writers and is run again under the
+     * reference lock only when a writer intervened, so use it for reference-only
+     * transactions.
+     */
+    public TxTemplate optimisticIdLock(IdLockHandler idLock, Serializable id) {
+        Assert.notNull(id, "id is required.");
+        return idLock(idLock, List.of(new IdLockPair(id, LockType.OPTIMISTIC)));
     }
 
     /** Sets the write lock for the specified ID at the time of transaction */
     public TxTemplate writeIdLock(IdLockHandler idLock, Serializable id) {
         Assert.notNull(id, "id is required.");
-        this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.WRITE));
+        return idLock(idLock, List.of(new IdLockPair(id, LockType.WRITE)));
+    }
+
+    /**
+     * Sets the time to wait for each ID lock.
+     * <p>
+     * When not set, the default timeout of the IdLockHandler is used.
+     */
+    public TxTemplate idLockTimeout(Duration timeout) {
+        this.idLockTimeout = timeout;
         return this;
     }
 
-    /** Performs transaction processing. */
-    public void tx(Runnable runnable) {
-        if (this.idLock.isPresent()) {
-            this.idLock.get().call(this.IdLockPair.get().id(), this.IdLockPair.get().lockType(), () -> {
-                tmpl.execute(status -> {
-                    runnable.run();
-                    return null;
-                });
-            });
-        } else {
-            tmpl.execute(status -> {
-                runnable.run();
-                return null;
-            });
+    /**
+     * Sets the locks for the specified IDs at the time of transaction.
+     * <p>
+     * Locks are added to those already set and acquired together in a canonical
+     * order. (When the same ID is set more than once, WRITE takes precedence.)
+     * No lock is taken when idLock is null.
+     */
+    public TxTemplate idLock(IdLockHandler idLock, Collection<IdLockPair> pairs) {
+        if (idLock == null) {
+            return this;
         }
+        this.idLock.ifPresent(v -> Assert.isTrue(v == idLock, "Only one IdLockHandler can be used."));
+        this.idLock = Optional.of(idLock);
+        this.idLockPairs.addAll(pairs);
+        return this;
     }
 
     /** Performs transaction processing. */
+    public void tx(Runnable runnable) {
+        tx(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Performs transaction processing.
+     * <p>
+     * The ID lock is held outside the transaction so that it is released after
+     * commit, unless the lock itself lives in the transaction.
+     */
     public <T> T tx(Supplier<T> supplier) {
-        if (this.idLock.isPresent()) {
-            return this.idLock.get().call(this.IdLockPair.get().id(), this.IdLockPair.get().lockType(),
-                    () -> tmpl.execute(status -> supplier.get()));
-        } else {
+        if (this.idLock.isEmpty()) {
             return tmpl.execute(status -> supplier.get());
         }
+        IdLockHandler handler = this.idLock.get();
+        if (handler.joinsTransaction()) {
+            return tmpl.execute(status -> handler.call(idLockPairs, idLockTimeout, supplier));
+        } else {
+            return handler.call(idLockPairs, idLockTimeout, () -> tmpl.execute(status -> supplier.get()));
+        }
     }
 
     public static TxTemplate of(PlatformTransactionManager txm) {
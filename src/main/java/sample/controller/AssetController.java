@@ -1,8 +1,6 @@
 package sample.controller;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -10,15 +8,14 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.validation.Valid;
-import lombok.Builder;
 import lombok.RequiredArgsConstructor;
-import sample.context.ActionStatusType;
-import sample.context.Dto;
-import sample.model.asset.CashInOut;
+import sample.model.constraints.Currency;
 import sample.usecase.AssetService;
+import sample.usecase.AssetService.UserCashOut;
 import sample.usecase.AssetService.UserRegCashOut;
 
 /**
@@ -32,9 +29,12 @@ public class AssetController {
 
     @GetMapping("/cio/unprocessedOut")
     public List<UserCashOut> findUnprocessedCashOut() {
-        return service.findUnprocessedCashOut().stream()
-                .map(UserCashOut::of)
-                .toList();
+        return service.findUnprocessedCashOut();
+    }
+
+    @GetMapping("/cio/withdrawable")
+    public Map<String, BigDecimal> withdrawable(@RequestParam @Currency String currency) {
+        return ControllerUtils.objectToMap("amount", service.withdrawable(currency));
     }
 
     @PostMapping("/cio/withdraw")
@@ -42,32 +42,4 @@ public class AssetController {
         return ControllerUtils.objectToMap("id", service.withdraw(param));
     }
 
-    @Builder
-    public static record UserCashOut(
-            String cashInOutId,
-            String currency,
-            BigDecimal absAmount,
-            LocalDate requestDay,
-            LocalDateTime requestDate,
-            LocalDate eventDay,
-            LocalDate valueDay,
-            ActionStatusType statusType,
-            LocalDateTime updateDate,
-            Long cashflowId) implements Dto {
-        public static UserCashOut of(final CashInOut cio) {
-            return UserCashOut.builder()
-                    .cashInOutId(cio.getCashInOutId())
-                    .currency(cio.getCurrency())
-                    .absAmount(cio.getAbsAmount())
-                    .requestDay(cio.getRequestDay())
-                    .requestDate(cio.getRequestDate())
-                    .eventDay(cio.getEventDay())
-                    .valueDay(cio.getValueDay())
-                    .statusType(cio.getStatusType())
-                    .updateDate(cio.getUpdateDate())
-                    .cashflowId(cio.getCashflowId())
-                    .build();
-        }
-    }
-
 }
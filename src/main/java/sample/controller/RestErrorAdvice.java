@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import org.springframework.context.MessageSource;
@@ -38,6 +39,7 @@ import lombok.extern.slf4j.Slf4j;
 import sample.context.ErrorKeys;
 import sample.context.ValidationException;
 import sample.context.actor.ActorSession;
+import sample.context.lock.IdLockTimeoutException;
 import sample.util.Warn;
 import sample.util.Warns;
 
@@ -83,6 +85,18 @@ public class RestErrorAdvice {
         return ErrorHolder.of(msg, locale(), ErrorKeys.OptimisticLockingFailure).result(HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(IdLockTimeoutException.class)
+    public ResponseEntity<Map<String, String[]>> handleIdLockTimeoutException(IdLockTimeoutException e) {
+        log.warn(e.getMessage());
+        return ErrorHolder.of(msg, locale(), ErrorKeys.LockTimeout).result(HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String[]>> handleRejectedExecutionException(RejectedExecutionException e) {
+        log.warn(e.getMessage());
+        return ErrorHolder.of(msg, locale(), ErrorKeys.Busy).result(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, String[]>> handleAccessDeniedException(AccessDeniedException e) {
         log.warn(e.getMessage());
@@ -10,9 +10,9 @@ import org.springframework.web.bind.annotation.RestController;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import sample.context.actor.type.ActorRoleType;
-import sample.model.asset.CashInOut;
 import sample.model.asset.CashInOut.FindCashInOut;
 import sample.usecase.admin.AssetAdminService;
+import sample.usecase.admin.AssetAdminService.AdminCashInOut;
 
 /**
  * Processes internal UI requests for assets.
@@ -26,7 +26,7 @@ public class AssetAdminController {
 
     /** Searches for unprocessed transfer request information. */
     @GetMapping("/cio")
-    public List<CashInOut> findCashInOut(@Valid FindCashInOut p) {
+    public List<AdminCashInOut> findCashInOut(@Valid FindCashInOut p) {
         return service.findCashInOut(p);
     }
 
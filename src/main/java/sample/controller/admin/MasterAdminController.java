@@ -14,10 +14,10 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import sample.context.actor.type.ActorRoleType;
 import sample.controller.ControllerUtils;
-import sample.model.master.Holiday;
 import sample.model.master.Holiday.FindHoliday;
 import sample.model.master.Holiday.RegHoliday;
 import sample.usecase.admin.MasterAdminService;
+import sample.usecase.admin.MasterAdminService.AdminHoliday;
 
 /**
  * Handles internal UI requests related to the master.
@@ -31,7 +31,7 @@ public class MasterAdminController {
 
     /** Find annual holidays. */
     @GetMapping("/holiday")
-    public List<Holiday> findHoliday(@RequestBody @Valid FindHoliday param) {
+    public List<AdminHoliday> findHoliday(@RequestBody @Valid FindHoliday param) {
         return service.findHoliday(param);
     }
 
@@ -2,7 +2,7 @@ package sample.controller.admin;
 
 import java.util.List;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -35,15 +35,25 @@ import sample.usecase.admin.SystemAdminService;
 public class SystemAdminController {
     private final SystemAdminService service;
 
-    /** Search actor audit logs. */
+    /**
+     * Search actor audit logs.
+     * <p>
+     * Pass cursor (empty for the first page, then nextCursor of the result) to
+     * read the logs by keyset.
+     */
     @GetMapping(value = "/audit/actor")
-    public Page<AuditActor> findAuditActor(@Valid FindAuditActor param) {
+    public Slice<AuditActor> findAuditActor(@Valid FindAuditActor param) {
         return service.findAuditActor(param);
     }
 
-    /** Search system event audit logs. */
+    /**
+     * Search system event audit logs.
+     * <p>
+     * Pass cursor (empty for the first page, then nextCursor of the result) to
+     * read the logs by keyset.
+     */
     @GetMapping(value = "/audit/event")
-    public Page<AuditEvent> findAuditEvent(@Valid FindAuditEvent param) {
+    public Slice<AuditEvent> findAuditEvent(@Valid FindAuditEvent param) {
         return service.findAuditEvent(param);
     }
 
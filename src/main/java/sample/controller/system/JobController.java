@@ -1,7 +1,11 @@
 package sample.controller.system;
 
+import java.util.List;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,6 +15,8 @@ import sample.context.actor.type.ActorRoleType;
 import sample.controller.ControllerUtils;
 import sample.usecase.admin.AssetAdminService;
 import sample.usecase.admin.SystemAdminService;
+import sample.usecase.admin.job.JobPartition;
+import sample.usecase.admin.job.JobRunner.JobProgress;
 
 /**
  * Processes UI requests for system jobs.
@@ -36,12 +42,30 @@ public class JobController {
     private final AssetAdminService asset;
     private final SystemAdminService system;
 
+    /** Returns the recent runs of the batch job with their progress. */
+    @GetMapping("/status/{jobName}")
+    public List<JobProgress> status(@PathVariable String jobName) {
+        return system.findJob(jobName);
+    }
+
+    /** Returns the partitions of the batch job with the nodes holding them. */
+    @GetMapping("/status/{jobName}/{jobKey}/partitions")
+    public List<JobPartition> partitions(@PathVariable String jobName, @PathVariable String jobKey) {
+        return system.findJobPartition(jobName, jobKey);
+    }
+
     /** Move forward with the business day. */
     @PostMapping("/daily/forwardDay")
     public ResponseEntity<Void> forwardDay() {
         return ControllerUtils.resultEmpty(() -> system.forwardDay());
     }
 
+    /** Purge the expired audit logs. */
+    @PostMapping("/daily/retainAudit")
+    public ResponseEntity<Void> retainAudit() {
+        return ControllerUtils.resultEmpty(() -> system.retainAudit());
+    }
+
     /** Close the withdrawal request. */
     @PostMapping("/daily/closingCashOut")
     public ResponseEntity<Void> closingCashOut() {
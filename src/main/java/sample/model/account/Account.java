@@ -2,6 +2,8 @@ package sample.model.account;
 
 import java.util.Optional;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import jakarta.persistence.Entity;
@@ -32,6 +34,7 @@ import sample.util.AppValidator;
  * low: Only the minimum required fields for the sample.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class Account implements DomainEntity {
 
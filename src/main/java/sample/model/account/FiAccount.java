@@ -1,10 +1,15 @@
 package sample.model.account;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.Data;
 import sample.context.DomainEntity;
 import sample.context.orm.OrmRepository;
@@ -20,13 +25,15 @@ import sample.model.constraints.IdStr;
  * as branches, names, and names are omitted.
  */
 @Entity
+@Table(indexes = @Index(name = "fi_account_idx_account", columnList = "accountId, category, currency"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class FiAccount implements DomainEntity {
     private static final String SequenceId = "fi_account_id_seq";
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long id;
     /** account ID */
     @IdStr
@@ -49,6 +56,6 @@ public class FiAccount implements DomainEntity {
                 FROM FiAccount a
                 WHERE a.accountId=?1 AND a.category=?2 AND a.currency=?3
                 """;
-        return rep.tmpl().load(jpql, accountId, category, currency);
+        return rep.tmpl().cacheable().load(jpql, accountId, category, currency);
     }
 }
@@ -1,11 +1,13 @@
 package sample.model.asset;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.Currency;
 
 import lombok.Getter;
+import sample.context.ActionStatusType;
 import sample.context.orm.OrmRepository;
-import sample.util.Calculator;
 
 /**
  * Represents the asset concept of the account.
@@ -25,18 +27,40 @@ public class Asset {
     /**
      * Determines if a withdrawal is possible.
      * <p>
-     * 0 &lt;= account balance + unrealized cash flow - (withdrawal request bound
-     * amount + withdrawal request amount)
-     * low: Since this is a judgment only, the scale specification is omitted. When
-     * returning the surplus amount, specify it properly.
+     * 0 &lt;= withdrawable amount - withdrawal request amount
      */
     public boolean canWithdraw(final OrmRepository rep, String currency, BigDecimal absAmount, LocalDate valueDay) {
-        var calc = Calculator.of(CashBalance.getOrNew(rep, accountId, currency).getAmount());
-        Cashflow.findUnrealize(rep, accountId, currency, valueDay).stream().forEach((cf) -> calc.add(cf.getAmount()));
-        CashInOut.findUnprocessed(rep, accountId, currency, true)
-                .forEach((withdrawal) -> calc.add(withdrawal.getAbsAmount().negate()));
-        calc.add(absAmount.negate());
-        return 0 <= calc.decimal().signum();
+        return 0 <= withdrawable(rep, currency, valueDay).compareTo(absAmount);
+    }
+
+    /**
+     * Returns the amount that can be withdrawn by the delivery date.
+     * <p>
+     * account balance + unrealized cash flow - withdrawal request bound amount
+     * <p>
+     * The amounts are summed by a single statement without reading the entities.
+     * The balance is the latest one up to the business day, which is the amount
+     * the balance of the day is carried forward with, so no balance is saved here.
+     * low: The fraction below the currency digits is truncated.
+     */
+    public BigDecimal withdrawable(final OrmRepository rep, String currency, LocalDate valueDay) {
+        var jpql = """
+                SELECT
+                  COALESCE((
+                    SELECT c.amount FROM CashBalance c
+                    WHERE c.accountId=?1 AND c.currency=?2 AND c.baseDay<=?3
+                    ORDER BY c.baseDay DESC LIMIT 1), 0)
+                  + COALESCE((
+                    SELECT SUM(cf.amount) FROM Cashflow cf
+                    WHERE cf.accountId=?1 AND cf.currency=?2 AND cf.valueDay<=?4 AND cf.statusType IN (?5)), 0)
+                  - COALESCE((
+                    SELECT SUM(cio.absAmount) FROM CashInOut cio
+                    WHERE cio.accountId=?1 AND cio.currency=?2 AND cio.withdrawal=true AND cio.statusType IN (?6)), 0)
+                """;
+        BigDecimal amount = rep.tmpl().load(jpql, accountId, currency, rep.dh().time().day(), valueDay,
+                ActionStatusType.UNPROCESSING_TYPES, ActionStatusType.UNPROCESSED_TYPES);
+        int scale = Currency.getInstance(currency).getDefaultFractionDigits();
+        return amount.setScale(scale, RoundingMode.DOWN);
     }
 
     public static Asset of(String accountId) {
@@ -10,7 +10,9 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.Data;
 import sample.context.DomainEntity;
 import sample.context.orm.OrmRepository;
@@ -26,13 +28,14 @@ import sample.util.TimePoint;
  * Represents the account balance.
  */
 @Entity
+@Table(indexes = @Index(name = "cash_balance_idx_account", columnList = "accountId, currency, baseDay"))
 @Data
 public class CashBalance implements DomainEntity {
     private static final String SequenceId = "cash_balance_id_seq";
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long id;
     /** account Id */
     @IdStr
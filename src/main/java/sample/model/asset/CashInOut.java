@@ -11,6 +11,8 @@ import org.apache.commons.lang3.StringUtils;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Data;
@@ -48,6 +50,10 @@ import sample.util.TimePoint;
  * required information.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "cash_in_out_idx_account", columnList = "accountId, currency, withdrawal, statusType"),
+        @Index(name = "cash_in_out_idx_event_day", columnList = "eventDay, statusType"),
+        @Index(name = "cash_in_out_idx_update_date", columnList = "updateDate") })
 @Data
 public class CashInOut implements DomainMetaEntity {
 
@@ -186,13 +192,24 @@ public class CashInOut implements DomainMetaEntity {
     }
 
     public static List<CashInOut> find(final OrmRepository rep, final FindCashInOut param) {
+        var jpql = findJpql(param);
+        return rep.tmpl().find("SELECT cio " + jpql.build(), jpql.args());
+    }
+
+    /** Search for account transfer deposit/withdrawal requests into the record type. */
+    public static <R extends Record> List<R> find(
+            final OrmRepository rep, final FindCashInOut param, Class<R> type) {
+        var jpql = findJpql(param);
+        return rep.tmpl().findAs(type, jpql.build(), jpql.args());
+    }
+
+    private static JpqlBuilder findJpql(final FindCashInOut param) {
         // low: Normally, put a from/to time period check in advance.
-        var jpql = JpqlBuilder.of("SELECT cio FROM CashInOut cio")
+        return JpqlBuilder.of("FROM CashInOut cio")
                 .equal("cio.currency", param.currency())
                 .in("cio.statusType", param.statusTypes())
                 .between("cio.updateDate", param.updFromDay().atStartOfDay(), DateUtils.dateTo(param.updToDay()))
                 .orderBy("cio.updateDate DESC");
-        return rep.tmpl().find(jpql.build(), jpql.args());
     }
 
     /**
@@ -222,6 +239,63 @@ public class CashInOut implements DomainMetaEntity {
         return rep.tmpl().find(jpql, rep.dh().time().day(), ActionStatusType.UNPROCESSED_TYPES);
     }
 
+    /**
+     * Returns the keys of the unprocessed listings of the day after lastId, in
+     * cashInOutId order.
+     * low: Only the keys are read so that a page stays small whatever its size.
+     */
+    public static List<CashInOutKey> findUnprocessedKeys(
+            final OrmRepository rep, LocalDate day, String lastId, int limit) {
+        return findUnprocessedKeys(rep, day, null, null, lastId, limit);
+    }
+
+    /**
+     * Returns the keys of the unprocessed listings of the day after lastId whose
+     * account is within the range, in cashInOutId order.
+     *
+     * @param accountFrom first account of the range (null when unbounded)
+     * @param accountTo   account the range ends before (null when unbounded)
+     */
+    public static List<CashInOutKey> findUnprocessedKeys(final OrmRepository rep, LocalDate day,
+            String accountFrom, String accountTo, String lastId, int limit) {
+        var jpql = JpqlBuilder.of("SELECT cio.cashInOutId, cio.accountId FROM CashInOut cio",
+                "cio.eventDay=?1 AND cio.statusType IN (?2) AND cio.cashInOutId > ?3", 4,
+                day, ActionStatusType.UNPROCESSED_TYPES, lastId == null ? "" : lastId)
+                .gte("cio.accountId", accountFrom)
+                .lt("cio.accountId", accountTo)
+                .orderBy("cio.cashInOutId");
+        List<Object[]> rows = rep.tmpl().findFirst(jpql.build(), limit, jpql.args());
+        return rows.stream()
+                .map(v -> new CashInOutKey((String) v[0], (String) v[1]))
+                .toList();
+    }
+
+    /** Returns the accounts having unprocessed listings of the day, in order. */
+    public static List<String> findUnprocessedAccountIds(final OrmRepository rep, LocalDate day) {
+        var jpql = """
+                SELECT DISTINCT cio.accountId
+                FROM CashInOut cio
+                WHERE cio.eventDay=?1 AND cio.statusType IN (?2)
+                ORDER BY cio.accountId
+                """;
+        return rep.tmpl().find(jpql, day, ActionStatusType.UNPROCESSED_TYPES);
+    }
+
+    /** Key of a listing. */
+    public static record CashInOutKey(String cashInOutId, String accountId) {
+    }
+
+    /** Searches for listings that have not yet been processed. (by ID) */
+    public static List<CashInOut> findUnprocessed(final OrmRepository rep, Collection<String> cashInOutIds) {
+        var jpql = """
+                SELECT cio
+                FROM CashInOut cio
+                WHERE cio.cashInOutId IN (?1) AND cio.statusType IN (?2)
+                ORDER BY cio.cashInOutId
+                """;
+        return rep.tmpl().find(jpql, cashInOutIds, ActionStatusType.UNPROCESSED_TYPES);
+    }
+
     /** Searches for listings that have not yet been processed. (by account) */
     public static List<CashInOut> findUnprocessed(
             final OrmRepository rep, String accountId, String currency, boolean withdrawal) {
@@ -234,15 +308,15 @@ public class CashInOut implements DomainMetaEntity {
         return rep.tmpl().find(jpql, accountId, currency, withdrawal, ActionStatusType.UNPROCESSED_TYPES);
     }
 
-    /** Searches for listings that have not yet been processed. (by account) */
-    public static List<CashInOut> findUnprocessed(final OrmRepository rep, String accountId) {
+    /** Searches for listings that have not yet been processed into the record type. (by account) */
+    public static <R extends Record> List<R> findUnprocessed(
+            final OrmRepository rep, String accountId, Class<R> type) {
         var jpql = """
-                SELECT cio
                 FROM CashInOut cio
                 WHERE cio.accountId=?1 AND cio.statusType IN (?2)
                 ORDER BY cio.updateDate DESC
                 """;
-        return rep.tmpl().find(jpql, accountId, ActionStatusType.UNPROCESSED_TYPES);
+        return rep.tmpl().findAs(type, jpql, accountId, ActionStatusType.UNPROCESSED_TYPES);
     }
 
     /** Request a withdrawal. */
@@ -3,20 +3,25 @@ package sample.model.asset;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Data;
 import sample.context.ActionStatusType;
 import sample.context.DomainMetaEntity;
 import sample.context.Dto;
+import sample.context.orm.JpqlBuilder;
 import sample.context.orm.OrmRepository;
 import sample.model.DomainErrorKeys;
 import sample.model.asset.type.CashflowType;
@@ -40,6 +45,9 @@ import sample.util.TimePoint;
  * low: Search related will be used mainly for accounting checks, forms, etc.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "cashflow_idx_account", columnList = "accountId, currency, valueDay"),
+        @Index(name = "cashflow_idx_value_day", columnList = "valueDay, statusType") })
 @Data
 public class Cashflow implements DomainMetaEntity {
     private static final String SequenceId = "cashflow_id_seq";
@@ -47,7 +55,7 @@ public class Cashflow implements DomainMetaEntity {
     /** cashflow ID */
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long cashflowId;
     /** account ID */
     @IdStr
@@ -95,6 +103,46 @@ public class Cashflow implements DomainMetaEntity {
         return this;
     }
 
+    /**
+     * The cash flows are processed together and reflected in the balance.
+     * <p>
+     * Amounts are summed per account and currency, so each balance is updated
+     * once, and the statuses are updated with a single statement. When any of the
+     * cash flows cannot be realized, a ValidationException is thrown and nothing
+     * should be committed; realize them one by one to isolate the failure.
+     * low: The bulk update bypasses the persistence context, so pass cash flows
+     * that are not managed in the current session.
+     *
+     * @return the number of cash flows realized
+     */
+    public static int realizeAll(final OrmRepository rep, final List<Cashflow> cashflows) {
+        if (cashflows.isEmpty()) {
+            return 0;
+        }
+        AppValidator.validate((v) -> {
+            cashflows.forEach(cf -> {
+                v.verify(cf.canRealize(rep), AssetErrorKeys.RealizeDay);
+                v.verify(cf.getStatusType().isUnprocessing(), DomainErrorKeys.StatusType);
+            });
+        });
+        var jpql = """
+                UPDATE Cashflow c
+                SET c.statusType=?1, c.updateDate=?2, c.updateId=?3
+                WHERE c.cashflowId IN (?4) AND c.statusType IN (?5)
+                """;
+        List<Long> ids = cashflows.stream().map(Cashflow::getCashflowId).toList();
+        int count = rep.tmpl().execute(jpql, ActionStatusType.PROCESSED, rep.dh().time().date(),
+                rep.dh().actor().id(), ids, ActionStatusType.UNPROCESSING_TYPES);
+        // Changed by another process after they were read.
+        AppValidator.validate((v) -> v.verify(count == ids.size(), DomainErrorKeys.StatusType));
+        cashflows.stream()
+                .collect(Collectors.groupingBy(
+                        cf -> List.of(cf.getAccountId(), cf.getCurrency()),
+                        Collectors.reducing(BigDecimal.ZERO, Cashflow::getAmount, BigDecimal::add)))
+                .forEach((key, amount) -> CashBalance.getOrNew(rep, key.get(0), key.get(1)).add(rep, amount));
+        return count;
+    }
+
     /**
      * Change the cash flow into an error state.
      * <p>
@@ -150,6 +198,47 @@ public class Cashflow implements DomainMetaEntity {
         return rep.tmpl().find(jpql, valueDay, ActionStatusType.UNPROCESSED_TYPES);
     }
 
+    /** Returns the accounts having cash flows to be realized at the delivery date, in order. */
+    public static List<String> findDoRealizeAccountIds(final OrmRepository rep, LocalDate valueDay) {
+        var jpql = """
+                SELECT DISTINCT c.accountId
+                FROM Cashflow c
+                WHERE c.valueDay=?1 AND c.statusType IN (?2)
+                ORDER BY c.accountId
+                """;
+        return rep.tmpl().find(jpql, valueDay, ActionStatusType.UNPROCESSED_TYPES);
+    }
+
+    /**
+     * Returns the accounts after lastAccountId within the range having cash flows
+     * to be realized at the delivery date, in order.
+     *
+     * @param accountFrom first account of the range (null when unbounded)
+     * @param accountTo   account the range ends before (null when unbounded)
+     */
+    public static List<String> findDoRealizeAccountIds(final OrmRepository rep, LocalDate valueDay,
+            String accountFrom, String accountTo, String lastAccountId, int limit) {
+        var jpql = JpqlBuilder.of("SELECT DISTINCT c.accountId FROM Cashflow c",
+                "c.valueDay=?1 AND c.statusType IN (?2) AND c.accountId > ?3", 4,
+                valueDay, ActionStatusType.UNPROCESSED_TYPES, lastAccountId == null ? "" : lastAccountId)
+                .gte("c.accountId", accountFrom)
+                .lt("c.accountId", accountTo)
+                .orderBy("c.accountId");
+        return rep.tmpl().findFirst(jpql.build(), limit, jpql.args());
+    }
+
+    /** Search the cash flows of the accounts to be realized at the delivery date, in accountId and id order. */
+    public static List<Cashflow> findDoRealize(final OrmRepository rep, LocalDate valueDay,
+            Collection<String> accountIds) {
+        var jpql = """
+                SELECT c
+                FROM Cashflow c
+                WHERE c.valueDay=?1 AND c.statusType IN (?2) AND c.accountId IN (?3)
+                ORDER BY c.accountId, c.id
+                """;
+        return rep.tmpl().find(jpql, valueDay, ActionStatusType.UNPROCESSED_TYPES, accountIds);
+    }
+
     /**
      * Register cash flow.
      * When the delivery date has been reached, the balance is reflected as it is.
@@ -5,12 +5,17 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.Valid;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +23,7 @@ import sample.context.DomainMetaEntity;
 import sample.context.Dto;
 import sample.context.ErrorKeys;
 import sample.context.ValidationException;
+import sample.context.orm.JpqlBuilder;
 import sample.context.orm.OrmRepository;
 import sample.model.constraints.Category;
 import sample.model.constraints.CategoryEmpty;
@@ -34,6 +40,8 @@ import sample.util.DateUtils;
  * Represents a holiday master.
  */
 @Entity
+@Table(indexes = @Index(name = "holiday_idx_day", columnList = "category, holiday"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class Holiday implements DomainMetaEntity {
     private static final String SequenceId = "holiday_id_seq";
@@ -41,7 +49,7 @@ public class Holiday implements DomainMetaEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
-    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 50)
     private Long id;
     /** Holiday classification (currency, country, financial institution, etc.) */
     @Category
@@ -70,7 +78,7 @@ public class Holiday implements DomainMetaEntity {
         var jpql = """
                 SELECT h FROM Holiday h WHERE h.category=?1 AND h.day=?2
                 """;
-        return rep.tmpl().get(jpql, category, day);
+        return rep.tmpl().cacheable().get(jpql, category, day);
     }
 
     public static Holiday load(final OrmRepository rep, LocalDate day) {
@@ -84,16 +92,23 @@ public class Holiday implements DomainMetaEntity {
     }
 
     public static List<Holiday> find(final OrmRepository rep, final FindHoliday param) {
+        var jpql = findJpql(param);
+        return rep.tmpl().find("SELECT h " + jpql.build(), jpql.args());
+    }
+
+    /** Find holidays into the record type. */
+    public static <R extends Record> List<R> find(final OrmRepository rep, final FindHoliday param, Class<R> type) {
+        var jpql = findJpql(param);
+        return rep.tmpl().findAs(type, jpql.build(), jpql.args());
+    }
+
+    private static JpqlBuilder findJpql(final FindHoliday param) {
         var category = param.category != null ? param.category : CategoryDefault;
         var fromDay = LocalDate.ofYearDay(param.year, 1);
         var toDay = DateUtils.dayTo(param.year);
-        var jpql = """
-                SELECT h
-                FROM Holiday h
-                WHERE h.category=?1 AND h.day BETWEEN ?2 AND ?3
-                ORDER BY h.day
-                """;
-        return rep.tmpl().find(jpql, category, fromDay, toDay);
+        return JpqlBuilder.of("FROM Holiday h", "h.category=?1 AND h.day BETWEEN ?2 AND ?3", 4,
+                category, fromDay, toDay)
+                .orderBy("h.day");
     }
 
     @Builder
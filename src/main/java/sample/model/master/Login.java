@@ -9,6 +9,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -31,6 +33,7 @@ import sample.util.AppValidator;
  * low: Only the minimum required fields for the sample.
  */
 @Entity
+@Table(indexes = @Index(name = "login_idx_login_id", columnList = "roleType, loginId"))
 @IdClass(LoginId.class)
 @Data
 @ToString(exclude = { "password" })
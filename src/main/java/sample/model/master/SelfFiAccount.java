@@ -1,10 +1,15 @@
 package sample.model.master;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.Data;
 import sample.context.DomainEntity;
 import sample.context.orm.OrmRepository;
@@ -18,6 +23,8 @@ import sample.model.constraints.IdStr;
  * branches, names, names, etc. has been omitted.
  */
 @Entity
+@Table(indexes = @Index(name = "self_fi_account_idx_category", columnList = "category, currency"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class SelfFiAccount implements DomainEntity {
     private static final String SequenceId = "self_fi_account_id_seq";
@@ -40,7 +47,7 @@ public class SelfFiAccount implements DomainEntity {
 
     public static SelfFiAccount load(final OrmRepository rep, String category, String currency) {
         var jpql = "SELECT a FROM SelfFiAccount a WHERE a.category=?1 AND a.currency=?2";
-        return rep.tmpl().load(jpql, category, currency);
+        return rep.tmpl().cacheable().load(jpql, category, currency);
     }
 
 }
@@ -3,6 +3,8 @@ package sample.model.master;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import jakarta.persistence.Entity;
@@ -28,6 +30,7 @@ import sample.util.AppValidator;
  * Representation of staffs.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class Staff implements DomainEntity {
 
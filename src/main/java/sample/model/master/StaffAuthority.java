@@ -2,11 +2,16 @@ package sample.model.master;
 
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.Data;
 import sample.context.DomainEntity;
 import sample.context.orm.OrmRepository;
@@ -17,6 +22,8 @@ import sample.model.constraints.Name;
  * Represents the authority assigned to an staff.
  */
 @Entity
+@Table(indexes = @Index(name = "staff_authority_idx_staff", columnList = "staffId"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class StaffAuthority implements DomainEntity {
     private static final String SequenceId = "staff_authority_id_seq";
@@ -34,7 +41,7 @@ public class StaffAuthority implements DomainEntity {
     /** Returns a list of privileges associated with the staff ID. */
     public static List<StaffAuthority> find(final OrmRepository rep, String staffId) {
         var jpql = "SELECT sa FROM StaffAuthority sa WHERE sa.staffId=?1";
-        return rep.tmpl().find(jpql, staffId);
+        return rep.tmpl().cacheable().find(jpql, staffId);
     }
 
 }
@@ -1,7 +1,10 @@
 package sample.usecase;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
@@ -9,12 +12,15 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
+import sample.context.ActionStatusType;
 import sample.context.Dto;
 import sample.context.audit.AuditHandler;
 import sample.context.lock.IdLockHandler;
+import sample.context.lock.IdShardExecutor;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
 import sample.model.BusinessDayHandler;
+import sample.model.asset.Asset;
 import sample.model.asset.CashInOut;
 import sample.model.asset.CashInOut.RegCashOut;
 import sample.model.constraints.AbsAmount;
@@ -32,6 +38,7 @@ public class AssetService {
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final IdLockHandler idLock;
+    private final IdShardExecutor shards;
     private final BusinessDayHandler businessDay;
     private final ApplicationEventPublisher eventPublisher;
 
@@ -39,14 +46,25 @@ public class AssetService {
      * Searches for unprocessed transfer request information.
      * low: For reference system, @Transactional is sufficient for cases where
      * account locking is not required.
-     * low: CashInOut is information overload, but it is sometimes difficult to
-     * identify the target of disclosure at the application layer, The final
-     * decision is left to the UI layer.
+     * low: Polled frequently by the UI, so the account is read optimistically
+     * without blocking withdrawals, and only the disclosed columns are read.
      */
-    public List<CashInOut> findUnprocessedCashOut() {
+    public List<UserCashOut> findUnprocessedCashOut() {
         String accountId = rep.dh().actor().id();
-        return TxTemplate.of(txm).readIdLock(idLock, accountId).tx(() -> {
-            return CashInOut.findUnprocessed(rep, accountId);
+        return TxTemplate.of(txm).optimisticIdLock(idLock, accountId).tx(() -> {
+            return CashInOut.findUnprocessed(rep, accountId, UserCashOut.class);
+        });
+    }
+
+    /**
+     * Returns the amount that can be withdrawn now.
+     * low: The delivery date is the one a withdrawal requested now would have.
+     */
+    public BigDecimal withdrawable(String currency) {
+        String accountId = rep.dh().actor().id();
+        LocalDate valueDay = businessDay.day(3);
+        return TxTemplate.of(txm).optimisticIdLock(idLock, accountId).tx(() -> {
+            return Asset.of(accountId).withdrawable(rep, currency, valueDay);
         });
     }
 
@@ -62,8 +80,19 @@ public class AssetService {
      * @return cashInOutId
      */
     public String withdraw(final UserRegCashOut param) {
+        return IdShardExecutor.await(withdrawAsync(param));
+    }
+
+    /**
+     * Transfer Withdrawal Request.
+     * low: When shards are enabled, requests on the same account are queued on
+     * its shard instead of waiting on the account lock.
+     *
+     * @return cashInOutId
+     */
+    public CompletableFuture<String> withdrawAsync(final UserRegCashOut param) {
         String accountId = rep.dh().actor().id();
-        return audit.audit("asset", "withdraw", List.of(accountId), () -> {
+        return shards.submit(accountId, () -> audit.audit("asset", "withdraw", List.of(accountId), () -> {
             // low: Account ID lock (WRITE) and transaction to process transfers
             CashInOut cio = TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
                 return CashInOut.withdraw(rep, businessDay, param.to(accountId));
@@ -73,7 +102,22 @@ public class AssetService {
             eventPublisher.publishEvent(
                     NotificationEvent.of(NotificationType.FINISH_REQUEST_WITHDRAW, cio));
             return cio.getCashInOutId();
-        });
+        }));
+    }
+
+    /** Transfer withdrawal request disclosed to the customer. */
+    @Builder
+    public static record UserCashOut(
+            String cashInOutId,
+            String currency,
+            BigDecimal absAmount,
+            LocalDate requestDay,
+            LocalDateTime requestDate,
+            LocalDate eventDay,
+            LocalDate valueDay,
+            ActionStatusType statusType,
+            LocalDateTime updateDate,
+            Long cashflowId) implements Dto {
     }
 
     @Builder
@@ -1,8 +1,19 @@
 package sample.usecase.admin;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -10,14 +21,23 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import sample.ApplicationProperties.BatchProps;
+import sample.context.ActionStatusType;
+import sample.context.Dto;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
 import sample.context.audit.AuditHandler;
 import sample.context.lock.IdLockHandler;
-import sample.context.lock.IdLockHandler.LockType;
+import sample.context.lock.IdShardExecutor;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
 import sample.model.asset.CashInOut;
+import sample.model.asset.CashInOut.CashInOutKey;
 import sample.model.asset.CashInOut.FindCashInOut;
 import sample.model.asset.Cashflow;
+import sample.usecase.admin.job.JobPartitioner;
+import sample.usecase.admin.job.JobRunner;
+import sample.usecase.admin.job.JobSegment;
 
 /**
  * Internal use case processing for asset domains.
@@ -30,59 +50,144 @@ public class AssetAdminService {
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final IdLockHandler idLock;
+    private final IdShardExecutor shards;
+    private final JobRunner jobs;
+    private final JobPartitioner partitioner;
 
     /**
      * Search for a transfer deposit/withdrawal request.
      * low: do not apply a READ lock on the split because it is cross-accounting.
      */
-    public List<CashInOut> findCashInOut(final FindCashInOut p) {
+    public List<AdminCashInOut> findCashInOut(final FindCashInOut p) {
         return TxTemplate.of(txm).readOnly().tx(() -> {
-            return CashInOut.find(rep, p);
+            return CashInOut.find(rep, p, AdminCashInOut.class);
         });
     }
 
     /**
      * Close the withdrawal request.
+     * <p>
+     * Unprocessed requests of the day are read by pages of keys in cashInOutId
+     * order, grouped by account and processed in parallel on the batch workers.
+     * Each account commits in chunks under its ID lock, and a failed chunk is
+     * processed again request by request so that only the failed request is put
+     * in the error state.
+     * <p>
+     * A checkpoint is recorded after each page, so a rerun after a failure
+     * resumes after the last completed page. When partitions are configured, the
+     * accounts are split into ranges shared by the nodes running the job.
      */
     public void closingCashOut() {
+        LocalDate day = rep.dh().time().day();
         audit.audit("asset", "closingCashOut", () -> {
-            TxTemplate.of(txm).tx(() -> {
-                closingCashOutInTx();
-            });
+            runJob("asset.closingCashOut", day, "closing",
+                    () -> CashInOut.findUnprocessedAccountIds(rep, day),
+                    segment -> closingCashOut(day, segment));
         });
     }
 
-    private void closingCashOutInTx() {
-        // low: It is preferable to perform subsequent processing after filter bundling
-        // on an account-by-account.
-        // low: When processing a large number of cases, the heap will die if it is done
-        // as it is, so paging is divided by id sorting and executed in increments.
-        CashInOut.findUnprocessed(rep).forEach(cio -> {
-            // low: It is up to the implementation of IdLockHandler to ensure that the locks
-            // in the TX work properly.
-            // If it is difficult to adjust, it is simpler to create a business halt time
-            // (only processes that need IdLock are deactivated) and process them all at
-            // once without locking.
-            idLock.call(cio.getAccountId(), LockType.WRITE, () -> {
-                try {
-                    cio.process(rep);
-                    // low: SQL publishing collateral. There is no interdependence in the
-                    // information handled, and the session cache tends to leak, so it should be
-                    // deleted each time.
-                    rep.flushAndClear();
-                } catch (Exception e) {
-                    log.error("The closing process for a transfer withdrawal request failed.["
-                            + cio.getCashInOutId() + "]", e);
-                    try {
-                        cio.error(rep);
-                        rep.flush();
-                    } catch (Exception ex) {
-                        // low: Only logger is mentioned since it is a double failure.
-                        // (probably caused by DB).
-                    }
+    /**
+     * Runs the step of the daily job, as a whole or split into account ranges.
+     *
+     * @param accountIds returns the sorted accounts to split into ranges
+     */
+    private void runJob(String jobName, LocalDate day, String stepName, Supplier<List<String>> accountIds,
+            Consumer<JobSegment> work) {
+        int partitions = rep.dh().props().getBatch().getPartitions();
+        if (partitions <= 0) {
+            jobs.run(jobName, day.toString(), job -> job.step(stepName, work::accept));
+        } else {
+            partitioner.run(jobName + "." + stepName, day.toString(),
+                    () -> JobPartitioner.boundaries(accountIds.get(), partitions), work::accept);
+        }
+    }
+
+    private void closingCashOut(LocalDate day, JobSegment segment) {
+        BatchProps batch = rep.dh().props().getBatch();
+        Actor actor = ActorSession.actor();
+        var processed = new LongAdder();
+        var errors = new LongAdder();
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newFixedThreadPool(batch.getWorkers())) {
+            String lastId = Optional.ofNullable(segment.lastKey()).orElse("");
+            while (true) {
+                String after = lastId;
+                // On the primary, where the pages processed so far are already committed.
+                List<CashInOutKey> keys = TxTemplate.of(txm).tx(() -> {
+                    return CashInOut.findUnprocessedKeys(
+                            rep, day, segment.rangeFrom(), segment.rangeTo(), after, batch.getPageSize());
+                });
+                if (keys.isEmpty()) {
+                    break;
                 }
+                lastId = keys.get(keys.size() - 1).cashInOutId();
+                Map<String, List<String>> idsByAccount = keys.stream().collect(Collectors.groupingBy(
+                        CashInOutKey::accountId,
+                        Collectors.mapping(CashInOutKey::cashInOutId, Collectors.toList())));
+                // low: The next page is read after the current one is done, so memory is
+                // bounded by the page size.
+                var pageProcessed = new LongAdder();
+                var pageErrors = new LongAdder();
+                CompletableFuture.allOf(idsByAccount.entrySet().stream()
+                        .map(e -> CompletableFuture.runAsync(() -> {
+                            ActorSession.bind(actor);
+                            try {
+                                closingCashOut(
+                                        e.getKey(), e.getValue(), batch.getChunkSize(), pageProcessed, pageErrors);
+                            } finally {
+                                ActorSession.unbind();
+                            }
+                        }, workers))
+                        .toArray(CompletableFuture[]::new)).join();
+                segment.checkpoint(lastId, pageProcessed.sum(), pageErrors.sum());
+                processed.add(pageProcessed.sum());
+                errors.add(pageErrors.sum());
+            }
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1_000_000_000d;
+        log.info(String.format("Closed the withdrawal requests. [processed=%d, error=%d, %.1f rows/sec]",
+                processed.sum(), errors.sum(), (processed.sum() + errors.sum()) / seconds));
+    }
+
+    private void closingCashOut(
+            String accountId, List<String> cashInOutIds, int chunkSize, LongAdder processed, LongAdder errors) {
+        for (int i = 0; i < cashInOutIds.size(); i += chunkSize) {
+            List<String> chunk = cashInOutIds.subList(i, Math.min(i + chunkSize, cashInOutIds.size()));
+            try {
+                int count = TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                    // low: Reloaded under the lock, since the request may have been cancelled
+                    // after the keys were read.
+                    List<CashInOut> list = CashInOut.findUnprocessed(rep, chunk);
+                    list.forEach(cio -> cio.process(rep));
+                    return list.size();
+                });
+                processed.add(count);
+            } catch (Exception e) {
+                chunk.forEach(id -> closingCashOut(accountId, id, processed, errors));
+            }
+        }
+    }
+
+    private void closingCashOut(String accountId, String cashInOutId, LongAdder processed, LongAdder errors) {
+        try {
+            int count = TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                List<CashInOut> list = CashInOut.findUnprocessed(rep, List.of(cashInOutId));
+                list.forEach(cio -> cio.process(rep));
+                return list.size();
             });
-        });
+            processed.add(count);
+        } catch (Exception e) {
+            log.error("The closing process for a transfer withdrawal request failed.[" + cashInOutId + "]", e);
+            errors.increment();
+            try {
+                TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                    CashInOut.findUnprocessed(rep, List.of(cashInOutId)).forEach(cio -> cio.error(rep));
+                });
+            } catch (Exception ex) {
+                // low: Only logger is mentioned since it is a double failure.
+                // (probably caused by DB).
+            }
+        }
     }
 
     /**
@@ -94,27 +199,109 @@ public class AssetAdminService {
         // low: Assume execution after day forward.
         LocalDate day = rep.dh().time().day();
         audit.audit("asset", "realizeCashflow", List.of(day), () -> {
-            Map<String, List<Cashflow>> cashflowsByAccount = Cashflow.findDoRealize(rep, day).stream()
-                    .collect(Collectors.groupingBy(Cashflow::getAccountId));
-            cashflowsByAccount.forEach((accountId, cashflows) -> {
+            runJob("asset.realizeCashflow", day, "realize",
+                    () -> Cashflow.findDoRealizeAccountIds(rep, day),
+                    segment -> realizeCashflow(day, segment));
+        });
+    }
+
+    /**
+     * Accounts are realized in accountId order, a page of accounts at a time,
+     * and a checkpoint is recorded after each page.
+     * <p>
+     * The cash flows of an account are realized together per chunk, so its
+     * balance is written once per chunk rather than once per cash flow.
+     */
+    private void realizeCashflow(LocalDate day, JobSegment segment) {
+        int pageSize = rep.dh().props().getBatch().getPageSize();
+        int chunkSize = rep.dh().props().getBatch().getChunkSize();
+        String lastAccountId = segment.lastKey();
+        while (true) {
+            String after = lastAccountId;
+            // On the primary, where the pages processed so far are already committed.
+            List<Cashflow> page = TxTemplate.of(txm).tx(() -> {
+                List<String> accountIds = Cashflow.findDoRealizeAccountIds(
+                        rep, day, segment.rangeFrom(), segment.rangeTo(), after, pageSize);
+                return accountIds.isEmpty() ? List.<Cashflow>of() : Cashflow.findDoRealize(rep, day, accountIds);
+            });
+            var cashflowsByAccount = page.stream()
+                    .collect(Collectors.groupingBy(Cashflow::getAccountId, TreeMap::new, Collectors.toList()));
+            if (cashflowsByAccount.isEmpty()) {
+                break;
+            }
+            var processed = new LongAdder();
+            var errors = new LongAdder();
+            // low: When shards are enabled, accounts are realized in parallel on their
+            // shards, queued behind the requests of the same account. A page may outgrow
+            // the shard queues, so it waits for room rather than being rejected.
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            try {
+                cashflowsByAccount.forEach((accountId, cashflows) -> futures.add(shards.put(accountId, () -> {
+                    realizeCashflow(accountId, cashflows, chunkSize, processed, errors);
+                })));
+            } catch (RuntimeException e) {
+                // the accounts already put finish before the page fails, without a checkpoint.
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).handle((v, t) -> v).join();
+                throw e;
+            }
+            IdShardExecutor.await(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+            lastAccountId = cashflowsByAccount.lastKey();
+            segment.checkpoint(lastAccountId, processed.sum(), errors.sum());
+        }
+    }
+
+    private void realizeCashflow(
+            String accountId, List<Cashflow> cashflows, int chunkSize, LongAdder processed, LongAdder errors) {
+        for (int i = 0; i < cashflows.size(); i += chunkSize) {
+            List<Cashflow> chunk = cashflows.subList(i, Math.min(i + chunkSize, cashflows.size()));
+            try {
+                processed.add(TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                    return Cashflow.realizeAll(rep, chunk);
+                }));
+            } catch (Exception e) {
+                chunk.forEach(cf -> realizeCashflow(accountId, cf.getCashflowId(), processed, errors));
+            }
+        }
+    }
+
+    private void realizeCashflow(String accountId, Long cashflowId, LongAdder processed, LongAdder errors) {
+        try {
+            TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                Cashflow.load(rep, cashflowId).realize(rep);
+            });
+            processed.increment();
+        } catch (Exception e) {
+            log.error("Failed to realize cash flow.[" + cashflowId + "]", e);
+            errors.increment();
+            try {
                 TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
-                    cashflows.forEach(cf -> {
-                        try {
-                            cf.realize(rep);
-                            rep.flushAndClear();
-                        } catch (Exception e) {
-                            log.error("Failed to realize cash flow.[" + cf.getCashflowId() + "]", e);
-                            try {
-                                cf.error(rep);
-                                rep.flush();
-                            } catch (Exception ex) {
-                                // nothing.
-                            }
-                        }
-                    });
+                    Cashflow.load(rep, cashflowId).error(rep);
                 });
-            });
-        });
+            } catch (Exception ex) {
+                // nothing.
+            }
+        }
+    }
+
+    /** Transfer deposit/withdrawal request listed to the staff. */
+    public static record AdminCashInOut(
+            String cashInOutId,
+            String accountId,
+            String currency,
+            BigDecimal absAmount,
+            boolean withdrawal,
+            LocalDate requestDay,
+            LocalDateTime requestDate,
+            LocalDate eventDay,
+            LocalDate valueDay,
+            String targetFiCode,
+            String targetFiAccountId,
+            String selfFiCode,
+            String selfFiAccountId,
+            ActionStatusType statusType,
+            Long cashflowId,
+            LocalDateTime updateDate,
+            String updateId) implements Dto {
     }
 
 }
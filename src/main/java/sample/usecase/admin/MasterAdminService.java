@@ -1,5 +1,7 @@
 package sample.usecase.admin;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -8,6 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import lombok.RequiredArgsConstructor;
+import sample.context.Dto;
 import sample.context.audit.AuditHandler;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
@@ -45,9 +48,9 @@ public class MasterAdminService {
     }
 
     /** Find holiday information. */
-    public List<Holiday> findHoliday(final FindHoliday param) {
+    public List<AdminHoliday> findHoliday(final FindHoliday param) {
         return TxTemplate.of(txm).readOnly().tx(() -> {
-            return Holiday.find(rep, param);
+            return Holiday.find(rep, param, AdminHoliday.class);
         });
     }
 
@@ -58,4 +61,15 @@ public class MasterAdminService {
         });
     }
 
+    /** Holiday listed to the staff. */
+    public static record AdminHoliday(
+            Long id,
+            String category,
+            LocalDate day,
+            String name,
+            String outline,
+            LocalDateTime updateDate,
+            String updateId) implements Dto {
+    }
+
 }
@@ -3,42 +3,58 @@ package sample.usecase.admin;
 import java.time.LocalDate;
 import java.util.List;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
 import sample.context.audit.AuditActor;
 import sample.context.audit.AuditActor.FindAuditActor;
 import sample.context.audit.AuditEvent;
 import sample.context.audit.AuditEvent.FindAuditEvent;
 import sample.context.audit.AuditHandler;
+import sample.context.audit.AuditRetention;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
 import sample.context.support.AppSetting;
 import sample.context.support.AppSetting.FindAppSetting;
 import sample.model.BusinessDayHandler;
+import sample.usecase.admin.job.JobPartition;
+import sample.usecase.admin.job.JobPartitioner;
+import sample.usecase.admin.job.JobRunner;
+import sample.usecase.admin.job.JobRunner.JobExecution;
+import sample.usecase.admin.job.JobRunner.JobProgress;
 
 /**
  * Internal use case processing for the system domain.
  */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class SystemAdminService {
+    private static final String RetainAuditJob = "system.retainAudit";
+
     private final OrmRepository rep;
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final BusinessDayHandler businessDay;
+    private final JobRunner jobs;
+    private final JobPartitioner partitioner;
+    private final AuditRetention retention;
 
     /** Search actor audit logs. */
-    public Page<AuditActor> findAuditActor(final FindAuditActor param) {
+    public Slice<AuditActor> findAuditActor(final FindAuditActor param) {
         return TxTemplate.of(txm).readOnly().tx(() -> {
             return AuditActor.find(rep, param);
         });
     }
 
     /** Search system event audit logs. */
-    public Page<AuditEvent> findAuditEvent(final FindAuditEvent param) {
+    public Slice<AuditEvent> findAuditEvent(final FindAuditEvent param) {
         return TxTemplate.of(txm).readOnly().tx(() -> {
             return AuditEvent.find(rep, param);
         });
@@ -58,6 +74,16 @@ public class SystemAdminService {
         });
     }
 
+    /** Search the recent runs of the batch job. */
+    public List<JobProgress> findJob(String jobName) {
+        return jobs.findRecent(jobName, 20);
+    }
+
+    /** Search the partitions of the batch job with their leases. */
+    public List<JobPartition> findJobPartition(String jobName, String jobKey) {
+        return partitioner.find(jobName, jobKey);
+    }
+
     /** Move forward with the business day. */
     public void forwardDay() {
         LocalDate currentDay = businessDay.day();
@@ -67,4 +93,45 @@ public class SystemAdminService {
         });
     }
 
+    /**
+     * Purge the expired audit logs.
+     * <p>
+     * The partitions of the coming months are created as well. The purge is run
+     * as the job of the day, so a run left unfinished is resumed.
+     */
+    public void retainAudit() {
+        LocalDate day = rep.dh().time().day();
+        audit.audit("system", "retainAudit", List.of(day), () -> {
+            jobs.run(RetainAuditJob, day.toString(), job -> retainAudit(job));
+        });
+    }
+
+    /**
+     * Runs the job of the day on the retention cron as the system.
+     * <p>
+     * Every node schedules it, but only the first node that claims the day runs it.
+     */
+    @Scheduled(cron = "${sample.audit.retention-cron:0 0 3 * * *}")
+    public void retainAuditScheduled() {
+        ActorSession.bind(Actor.SYSTEM);
+        try {
+            LocalDate day = rep.dh().time().day();
+            audit.audit("system", "retainAudit", List.of(day), () -> {
+                jobs.runOnce(RetainAuditJob, day.toString(), job -> retainAudit(job));
+            });
+        } catch (Exception e) {
+            log.error("Failed to purge the audit logs.", e);
+        } finally {
+            ActorSession.unbind();
+        }
+    }
+
+    private void retainAudit(JobExecution job) {
+        job.step("retain", step -> {
+            long deleted = retention.retain();
+            log.info("Purged the expired audit logs by rows. [" + deleted + "]");
+            step.checkpoint(null, deleted, 0);
+        });
+    }
+
 }
@@ -0,0 +1,107 @@
+package sample.usecase.admin.job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import sample.context.ActionStatusType;
+import sample.context.DomainEntity;
+import sample.context.orm.OrmRepository;
+
+/**
+ * Represents a run of a batch job.
+ * <p>
+ * A job is identified by its name and key (e.g. the business day). A run that
+ * did not finish is resumed by the next run of the same name and key.
+ */
+@Entity
+@Table(indexes = @Index(name = "job_instance_idx_name", columnList = "jobName, jobKey"))
+@Data
+public class JobInstance implements DomainEntity {
+    private static final String SequenceId = "job_instance_id_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    private Long id;
+    @NotNull
+    private String jobName;
+    @NotNull
+    private String jobKey;
+    @NotNull
+    @Enumerated
+    private ActionStatusType statusType;
+    private String errorReason;
+    @NotNull
+    private LocalDateTime startDate;
+    /** End date and time (null if not completed) */
+    private LocalDateTime endDate;
+
+    /** Restarts the run. */
+    public JobInstance restart(final OrmRepository rep) {
+        setStatusType(ActionStatusType.PROCESSING);
+        setErrorReason(null);
+        setEndDate(null);
+        return rep.update(this);
+    }
+
+    /** The run is set to PROCESSED status. */
+    public JobInstance finish(final OrmRepository rep) {
+        setStatusType(ActionStatusType.PROCESSED);
+        setEndDate(rep.dh().time().date());
+        return rep.update(this);
+    }
+
+    /** The run is set to ERROR status. */
+    public JobInstance error(final OrmRepository rep, String errorReason) {
+        setStatusType(ActionStatusType.ERROR);
+        setErrorReason(StringUtils.abbreviate(errorReason, 250));
+        setEndDate(rep.dh().time().date());
+        return rep.update(this);
+    }
+
+    /** Returns the latest run of the job. */
+    public static Optional<JobInstance> getLatest(final OrmRepository rep, String jobName, String jobKey) {
+        var jpql = """
+                SELECT ji
+                FROM JobInstance ji
+                WHERE ji.jobName=?1 AND ji.jobKey=?2
+                ORDER BY ji.id DESC
+                """;
+        return rep.tmpl().<JobInstance>findFirst(jpql, 1, jobName, jobKey).stream().findFirst();
+    }
+
+    /** Returns the recent runs of the job, latest first. */
+    public static List<JobInstance> findRecent(final OrmRepository rep, String jobName, int limit) {
+        var jpql = """
+                SELECT ji
+                FROM JobInstance ji
+                WHERE ji.jobName=?1
+                ORDER BY ji.id DESC
+                """;
+        return rep.tmpl().findFirst(jpql, limit, jobName);
+    }
+
+    /** Registers a new run. */
+    public static JobInstance register(final OrmRepository rep, String jobName, String jobKey) {
+        var m = new JobInstance();
+        m.setJobName(jobName);
+        m.setJobKey(jobKey);
+        m.setStatusType(ActionStatusType.PROCESSING);
+        m.setStartDate(rep.dh().time().date());
+        return rep.save(m);
+    }
+
+}
@@ -0,0 +1,171 @@
+package sample.usecase.admin.job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import sample.context.ActionStatusType;
+import sample.context.DomainEntity;
+import sample.context.orm.OrmRepository;
+
+/**
+ * Represents a partition of a job shared by several nodes.
+ * <p>
+ * A node claims a partition by taking its lease, keeps the lease alive while it
+ * works and completes the partition at the end. A partition whose lease has
+ * expired is claimed again by another node and continues after lastKey.
+ * <p>
+ * The partition covers the keys from rangeFrom (inclusive) to rangeTo
+ * (exclusive). Null means unbounded.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "jobName", "jobKey", "partitionNo" }))
+@Data
+public class JobPartition implements DomainEntity {
+    private static final String SequenceId = "job_partition_id_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    private Long id;
+    @NotNull
+    private String jobName;
+    @NotNull
+    private String jobKey;
+    private int partitionNo;
+    private String rangeFrom;
+    private String rangeTo;
+    @NotNull
+    @Enumerated
+    private ActionStatusType statusType;
+    /** Node holding the lease */
+    private String owner;
+    private LocalDateTime leaseUntil;
+    /** Last committed key of the partition (null when not started) */
+    private String lastKey;
+    private long processed;
+    private long errorCount;
+    @NotNull
+    private LocalDateTime updateDate;
+
+    public static List<JobPartition> find(final OrmRepository rep, String jobName, String jobKey) {
+        var jpql = """
+                SELECT jp
+                FROM JobPartition jp
+                WHERE jp.jobName=?1 AND jp.jobKey=?2
+                ORDER BY jp.partitionNo
+                """;
+        return rep.tmpl().find(jpql, jobName, jobKey);
+    }
+
+    /**
+     * Returns the partitions that can be claimed: not yet started, failed, or
+     * with an expired lease.
+     */
+    public static List<JobPartition> findClaimable(
+            final OrmRepository rep, String jobName, String jobKey, LocalDateTime now) {
+        var jpql = """
+                SELECT jp
+                FROM JobPartition jp
+                WHERE jp.jobName=?1 AND jp.jobKey=?2
+                 AND (jp.statusType IN (?3) OR (jp.statusType=?4 AND jp.leaseUntil<?5))
+                ORDER BY jp.partitionNo
+                """;
+        return rep.tmpl().find(jpql, jobName, jobKey, ActionStatusType.UNPROCESSING_TYPES,
+                ActionStatusType.PROCESSING, now);
+    }
+
+    /**
+     * Takes the lease of the partition unless another node took it first.
+     *
+     * @return true when the lease was taken
+     */
+    public static boolean claim(final OrmRepository rep, Long id, String owner, LocalDateTime now,
+            LocalDateTime leaseUntil) {
+        var jpql = """
+                UPDATE JobPartition jp
+                SET jp.statusType=?1, jp.owner=?2, jp.leaseUntil=?3, jp.updateDate=?4
+                WHERE jp.id=?5
+                 AND (jp.statusType IN (?6) OR (jp.statusType=?1 AND jp.leaseUntil<?4))
+                """;
+        return 1 == rep.tmpl().execute(jpql, ActionStatusType.PROCESSING, owner, leaseUntil, now, id,
+                ActionStatusType.UNPROCESSING_TYPES);
+    }
+
+    /**
+     * Extends the lease.
+     *
+     * @return false when the lease has been lost
+     */
+    public static boolean extend(final OrmRepository rep, Long id, String owner, LocalDateTime now,
+            LocalDateTime leaseUntil) {
+        var jpql = """
+                UPDATE JobPartition jp
+                SET jp.leaseUntil=?1, jp.updateDate=?2
+                WHERE jp.id=?3 AND jp.owner=?4 AND jp.statusType=?5
+                """;
+        return 1 == rep.tmpl().execute(jpql, leaseUntil, now, id, owner, ActionStatusType.PROCESSING);
+    }
+
+    /**
+     * Records the progress committed since the previous checkpoint and extends the
+     * lease.
+     *
+     * @return false when the lease has been lost
+     */
+    public static boolean checkpoint(final OrmRepository rep, Long id, String owner, String lastKey,
+            long processed, long errors, LocalDateTime now, LocalDateTime leaseUntil) {
+        var jpql = """
+                UPDATE JobPartition jp
+                SET jp.lastKey=?1, jp.processed=jp.processed+?2, jp.errorCount=jp.errorCount+?3,
+                 jp.leaseUntil=?4, jp.updateDate=?5
+                WHERE jp.id=?6 AND jp.owner=?7 AND jp.statusType=?8
+                """;
+        return 1 == rep.tmpl().execute(jpql, lastKey, processed, errors, leaseUntil, now, id, owner,
+                ActionStatusType.PROCESSING);
+    }
+
+    /**
+     * Ends the lease with the given status.
+     *
+     * @return false when the lease has been lost
+     */
+    public static boolean complete(final OrmRepository rep, Long id, String owner, ActionStatusType statusType,
+            LocalDateTime now) {
+        var jpql = """
+                UPDATE JobPartition jp
+                SET jp.statusType=?1, jp.leaseUntil=NULL, jp.updateDate=?2
+                WHERE jp.id=?3 AND jp.owner=?4 AND jp.statusType=?5
+                """;
+        return 1 == rep.tmpl().execute(jpql, statusType, now, id, owner, ActionStatusType.PROCESSING);
+    }
+
+    /** Registers the partitions of the job. */
+    public static List<JobPartition> register(
+            final OrmRepository rep, String jobName, String jobKey, List<String> boundaries) {
+        LocalDateTime now = rep.dh().time().date();
+        int count = boundaries.size() + 1;
+        return rep.saveAll(IntStream.range(0, count).mapToObj(i -> {
+            var m = new JobPartition();
+            m.setJobName(jobName);
+            m.setJobKey(jobKey);
+            m.setPartitionNo(i);
+            m.setRangeFrom(i == 0 ? null : boundaries.get(i - 1));
+            m.setRangeTo(i == count - 1 ? null : boundaries.get(i));
+            m.setStatusType(ActionStatusType.UNPROCESSED);
+            m.setUpdateDate(now);
+            return m;
+        }).toList());
+    }
+
+}
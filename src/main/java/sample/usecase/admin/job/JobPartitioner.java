@@ -0,0 +1,264 @@
+package sample.usecase.admin.job;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.InvocationException;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+
+/**
+ * Runs batch jobs split into partitions shared by several nodes.
+ * <p>
+ * The partitions of a job are registered in the lease table by the first node
+ * that runs it. Every node running the same job then claims the partitions one
+ * at a time, keeps the lease alive while it works and completes the partition
+ * at the end, so N nodes share the load.
+ * <p>
+ * A partition whose lease expired (e.g. its node crashed) is claimed again by
+ * another node and continues after its last checkpoint. A failed partition is
+ * left in ERROR and is claimed again by the next run.
+ * <p>
+ * low: The lease is compared with the clock of each node, so the clocks should
+ * be synchronized well within the lease duration. A node that lost its lease
+ * notices it at the next checkpoint, so the work of a partition must be
+ * idempotent up to one checkpoint.
+ */
+@Component
+@Slf4j
+public class JobPartitioner implements AutoCloseable {
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final String node;
+    private final ScheduledExecutorService heartbeats;
+
+    public JobPartitioner(OrmRepository rep, PlatformTransactionManager txm) {
+        this.rep = rep;
+        this.txm = txm;
+        this.node = UUID.randomUUID().toString();
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "job-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Returns the name of this node in the lease table. */
+    public String node() {
+        return node;
+    }
+
+    /**
+     * Runs the partitions of the job until none is left to claim.
+     *
+     * @param boundaries returns the keys splitting the partitions. It is called
+     *                   only by the node that registers the partitions.
+     */
+    public void run(String jobName, String jobKey, Supplier<List<String>> boundaries,
+            Consumer<PartitionExecution> work) {
+        Duration lease = rep.dh().props().getBatch().getLease();
+        prepare(jobName, jobKey, boundaries);
+        Set<Long> tried = new HashSet<>();
+        Optional<JobPartition> claimed;
+        while ((claimed = claim(jobName, jobKey, lease, tried)).isPresent()) {
+            JobPartition partition = claimed.get();
+            tried.add(partition.getId());
+            process(partition, lease, work);
+        }
+    }
+
+    private void prepare(String jobName, String jobKey, Supplier<List<String>> boundaries) {
+        try {
+            tx(() -> {
+                if (JobPartition.find(rep, jobName, jobKey).isEmpty()) {
+                    List<JobPartition> partitions = JobPartition.register(rep, jobName, jobKey, boundaries.get());
+                    log.info("Registered the partitions. [" + jobName + ", " + jobKey + ", "
+                            + partitions.size() + "]");
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // low: Another node registered them first. (unique constraint)
+            if (tx(() -> JobPartition.find(rep, jobName, jobKey)).isEmpty()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Claims a partition this node has not tried in the current run.
+     * <p>
+     * low: A partition is tried once per run, so a partition failing on this node
+     * is left to the other nodes or the next run.
+     */
+    Optional<JobPartition> claim(String jobName, String jobKey, Duration lease, Set<Long> tried) {
+        return tx(() -> {
+            LocalDateTime now = rep.dh().time().date();
+            return JobPartition.findClaimable(rep, jobName, jobKey, now).stream()
+                    .filter(v -> !tried.contains(v.getId()))
+                    .filter(v -> JobPartition.claim(rep, v.getId(), node, now, now.plus(lease)))
+                    .findFirst();
+        });
+    }
+
+    private void process(JobPartition partition, Duration lease, Consumer<PartitionExecution> work) {
+        log.info("Claimed the partition. [" + partition.getJobName() + ", " + partition.getJobKey() + ", "
+                + partition.getPartitionNo() + "]");
+        var execution = new PartitionExecution(partition, lease);
+        long interval = Math.max(lease.toMillis() / 3, 1);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(
+                execution::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        try {
+            work.accept(execution);
+            heartbeat.cancel(false);
+            complete(partition, ActionStatusType.PROCESSED);
+        } catch (RuntimeException e) {
+            heartbeat.cancel(false);
+            try {
+                complete(partition, ActionStatusType.ERROR);
+            } catch (Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+            throw e;
+        }
+    }
+
+    private void complete(JobPartition partition, ActionStatusType statusType) {
+        boolean completed = tx(() -> {
+            return JobPartition.complete(rep, partition.getId(), node, statusType, rep.dh().time().date());
+        });
+        if (!completed) {
+            log.warn("The lease of the partition was lost before completion. [" + partition.getJobName() + ", "
+                    + partition.getJobKey() + ", " + partition.getPartitionNo() + "]");
+        }
+    }
+
+    /**
+     * Returns the partitions of the job.
+     * low: Read on the primary, since a replica may lag behind the other nodes' progress.
+     */
+    public List<JobPartition> find(String jobName, String jobKey) {
+        return TxTemplate.of(txm).tx(() -> {
+            return JobPartition.find(rep, jobName, jobKey);
+        });
+    }
+
+    private <T> T tx(Supplier<T> supplier) {
+        return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(supplier);
+    }
+
+    /**
+     * Splits the sorted distinct keys into the given number of contiguous ranges
+     * holding about the same number of keys, and returns the boundaries.
+     */
+    public static List<String> boundaries(List<String> sortedKeys, int partitions) {
+        var result = new ArrayList<String>();
+        for (int i = 1; i < partitions; i++) {
+            int idx = (int) ((long) sortedKeys.size() * i / partitions);
+            if (0 < idx && (result.isEmpty() || !result.get(result.size() - 1).equals(sortedKeys.get(idx)))) {
+                result.add(sortedKeys.get(idx));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+    }
+
+    /** A partition claimed by this node. */
+    public class PartitionExecution implements JobSegment {
+        private final JobPartition partition;
+        private final Duration lease;
+        private volatile String lastKey;
+        private volatile boolean lost;
+
+        PartitionExecution(JobPartition partition, Duration lease) {
+            this.partition = partition;
+            this.lease = lease;
+            this.lastKey = partition.getLastKey();
+        }
+
+        public JobPartition partition() {
+            return partition;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String rangeFrom() {
+            return partition.getRangeFrom();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String rangeTo() {
+            return partition.getRangeTo();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String lastKey() {
+            return lastKey;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * InvocationException is thrown when the lease has been lost to another node.
+         */
+        @Override
+        public void checkpoint(String lastKey, long processed, long errors) {
+            boolean kept = !lost && tx(() -> {
+                LocalDateTime now = rep.dh().time().date();
+                return JobPartition.checkpoint(
+                        rep, partition.getId(), node, lastKey, processed, errors, now, now.plus(lease));
+            });
+            if (!kept) {
+                lost = true;
+                throw InvocationException.of("The lease of the partition was lost. ["
+                        + partition.getJobName() + ", " + partition.getPartitionNo() + "]");
+            }
+            this.lastKey = lastKey;
+        }
+
+        void heartbeat() {
+            if (lost) {
+                return;
+            }
+            try {
+                boolean kept = tx(() -> {
+                    LocalDateTime now = rep.dh().time().date();
+                    return JobPartition.extend(rep, partition.getId(), node, now, now.plus(lease));
+                });
+                if (!kept) {
+                    lost = true;
+                    log.warn("The lease of the partition was lost. [" + partition.getJobName() + ", "
+                            + partition.getPartitionNo() + "]");
+                }
+            } catch (Exception e) {
+                // low: Retried at the next beat. The lease expires when the DB stays down.
+                log.warn("Failed to extend the lease of the partition. [" + partition.getId() + "]", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package sample.usecase.admin.job;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.lock.IdLockHandler.DbIdLockHandler;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+
+/**
+ * Runs batch jobs with checkpoints in the system schema.
+ * <p>
+ * When the latest run of the same job name and key did not finish, it is
+ * resumed: finished steps are skipped and the other steps continue from their
+ * last checkpoint. Otherwise a new run starts from the beginning.
+ * <p>
+ * Each step records a checkpoint after committing a unit of work. The records
+ * are written in their own transactions, so they survive a failure of the job.
+ * low: A run left in PROCESSING by a crashed node is resumed as well, so do not
+ * start the same job on several nodes at once. Use {@link #runOnce} for a job
+ * started on every node, and {@link JobPartitioner} to share a job among nodes.
+ */
+@Component
+@RequiredArgsConstructor(staticName = "of")
+@Slf4j
+public class JobRunner {
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+
+    /** Runs the job. */
+    public void run(String jobName, String jobKey, Consumer<JobExecution> job) {
+        JobInstance instance = tx(() -> {
+            return JobInstance.getLatest(rep, jobName, jobKey)
+                    .filter(v -> !v.getStatusType().isFinish())
+                    .map(v -> {
+                        log.info("Resume the job. [" + jobName + ", " + jobKey + ", " + v.getId() + "]");
+                        return v.restart(rep);
+                    })
+                    .orElseGet(() -> JobInstance.register(rep, jobName, jobKey));
+        });
+        execute(instance, job);
+    }
+
+    /**
+     * Runs the job unless another run of the same name and key is processing or
+     * has finished, and returns whether it ran.
+     * <p>
+     * The run is claimed under the DB ID lock of the name and key, so of the
+     * nodes starting the job (e.g. on a schedule) only the first one runs it. A
+     * failed run is resumed by the next claim.
+     * low: A run left in PROCESSING by a crashed node is not claimed again. Resume
+     * it with {@link #run}.
+     */
+    public boolean runOnce(String jobName, String jobKey, Consumer<JobExecution> job) {
+        var claimLock = new DbIdLockHandler(rep);
+        Optional<JobInstance> claimed = TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW)
+                .writeIdLock(claimLock, "job:" + jobName + ":" + jobKey)
+                .tx(() -> {
+                    Optional<JobInstance> latest = JobInstance.getLatest(rep, jobName, jobKey);
+                    if (latest.isEmpty()) {
+                        return Optional.of(JobInstance.register(rep, jobName, jobKey));
+                    }
+                    return latest
+                            .filter(v -> v.getStatusType().isUnprocessing())
+                            .map(v -> {
+                                log.info("Resume the job. [" + jobName + ", " + jobKey + ", " + v.getId() + "]");
+                                return v.restart(rep);
+                            });
+                });
+        if (claimed.isEmpty()) {
+            log.info("Skip the job claimed by another run. [" + jobName + ", " + jobKey + "]");
+            return false;
+        }
+        execute(claimed.get(), job);
+        return true;
+    }
+
+    private void execute(JobInstance instance, Consumer<JobExecution> job) {
+        try {
+            job.accept(new JobExecution(instance));
+            tx(() -> instance.finish(rep));
+        } catch (RuntimeException e) {
+            try {
+                tx(() -> instance.error(rep, e.getMessage()));
+            } catch (Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the recent runs of the job with their steps, latest first.
+     * low: Read on the primary, since a replica may lag behind the running steps.
+     */
+    public List<JobProgress> findRecent(String jobName, int limit) {
+        return TxTemplate.of(txm).tx(() -> {
+            return JobInstance.findRecent(rep, jobName, limit).stream()
+                    .map(v -> new JobProgress(v, JobStep.find(rep, v.getId())))
+                    .toList();
+        });
+    }
+
+    private <T> T tx(Supplier<T> supplier) {
+        return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(supplier);
+    }
+
+    /** A run of a job. */
+    @RequiredArgsConstructor
+    public class JobExecution {
+        private final JobInstance instance;
+
+        public JobInstance instance() {
+            return instance;
+        }
+
+        /** Runs the step unless it already finished in this run. */
+        public void step(String stepName, Consumer<StepExecution> step) {
+            JobStep current = tx(() -> {
+                return JobStep.get(rep, instance.getId(), stepName)
+                        .orElseGet(() -> JobStep.register(rep, instance.getId(), stepName));
+            });
+            if (current.getStatusType().isFinish()) {
+                log.info("Skip the finished step. [" + instance.getJobName() + ", " + stepName + "]");
+                return;
+            }
+            var execution = new StepExecution(current);
+            step.accept(execution);
+            tx(() -> execution.current.finish(rep));
+        }
+    }
+
+    /** A run of a step. */
+    public class StepExecution implements JobSegment {
+        private JobStep current;
+
+        StepExecution(JobStep current) {
+            this.current = current;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String lastKey() {
+            return current.getLastKey();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void checkpoint(String lastKey, long processed, long errors) {
+            JobStep step = current;
+            current = tx(() -> step.checkpoint(rep, lastKey, processed, errors));
+        }
+    }
+
+    /** A run of a job with its steps. */
+    public static record JobProgress(JobInstance instance, List<JobStep> steps) {
+    }
+
+}
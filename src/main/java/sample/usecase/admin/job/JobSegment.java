@@ -0,0 +1,30 @@
+package sample.usecase.admin.job;
+
+/**
+ * A unit of work of a job that resumes from its last checkpoint.
+ * <p>
+ * It is either a whole step, or a partition of a step shared by several nodes.
+ */
+public interface JobSegment {
+
+    /** Returns the first key of the segment. (null when unbounded) */
+    default String rangeFrom() {
+        return null;
+    }
+
+    /** Returns the key the segment ends before. (null when unbounded) */
+    default String rangeTo() {
+        return null;
+    }
+
+    /** Returns the last committed key. (null when the segment has just started) */
+    String lastKey();
+
+    /**
+     * Records the progress committed since the previous checkpoint.
+     * <p>
+     * Call it only after the work up to lastKey has been committed.
+     */
+    void checkpoint(String lastKey, long processed, long errors);
+
+}
@@ -0,0 +1,88 @@
+package sample.usecase.admin.job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import sample.context.ActionStatusType;
+import sample.context.DomainEntity;
+import sample.context.orm.OrmRepository;
+
+/**
+ * Represents the checkpoint of a step of a job run.
+ * <p>
+ * lastKey is the last key committed by the step, so a resumed step continues
+ * after it.
+ */
+@Entity
+@Table(indexes = @Index(name = "job_step_idx_instance", columnList = "instanceId, stepName"))
+@Data
+public class JobStep implements DomainEntity {
+    private static final String SequenceId = "job_step_id_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SequenceId)
+    @SequenceGenerator(name = SequenceId, sequenceName = SequenceId, allocationSize = 1)
+    private Long id;
+    @NotNull
+    private Long instanceId;
+    @NotNull
+    private String stepName;
+    private String lastKey;
+    /** Number of rows processed */
+    private long processed;
+    /** Number of rows failed */
+    private long errorCount;
+    @NotNull
+    @Enumerated
+    private ActionStatusType statusType;
+    @NotNull
+    private LocalDateTime updateDate;
+
+    /** Records the committed progress. */
+    public JobStep checkpoint(final OrmRepository rep, String lastKey, long processed, long errors) {
+        setLastKey(lastKey);
+        setProcessed(this.processed + processed);
+        setErrorCount(this.errorCount + errors);
+        setUpdateDate(rep.dh().time().date());
+        return rep.update(this);
+    }
+
+    /** The step is set to PROCESSED status. */
+    public JobStep finish(final OrmRepository rep) {
+        setStatusType(ActionStatusType.PROCESSED);
+        setUpdateDate(rep.dh().time().date());
+        return rep.update(this);
+    }
+
+    public static Optional<JobStep> get(final OrmRepository rep, Long instanceId, String stepName) {
+        var jpql = "SELECT js FROM JobStep js WHERE js.instanceId=?1 AND js.stepName=?2";
+        return rep.tmpl().get(jpql, instanceId, stepName);
+    }
+
+    public static List<JobStep> find(final OrmRepository rep, Long instanceId) {
+        var jpql = "SELECT js FROM JobStep js WHERE js.instanceId=?1 ORDER BY js.id";
+        return rep.tmpl().find(jpql, instanceId);
+    }
+
+    /** Registers a new step. */
+    public static JobStep register(final OrmRepository rep, Long instanceId, String stepName) {
+        var m = new JobStep();
+        m.setInstanceId(instanceId);
+        m.setStepName(stepName);
+        m.setStatusType(ActionStatusType.PROCESSING);
+        m.setUpdateDate(rep.dh().time().date());
+        return rep.save(m);
+    }
+
+}
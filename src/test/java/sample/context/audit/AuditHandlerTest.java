@@ -0,0 +1,126 @@
+package sample.context.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import ch.qos.logback.classic.Level;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.ValidationException;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.audit.AuditHandler.AuditPersister;
+import sample.context.audit.AuditWriter.Overflow;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+@Slf4j
+public class AuditHandlerTest {
+    private DomainTester tester;
+    private ResourceBundleMessageSource msg;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(AuditActor.class).build();
+        msg = new ResourceBundleMessageSource();
+        msg.setBasenames("messages-validation", "messages");
+        msg.setDefaultEncoding("UTF-8");
+        ActorSession.bind(Actor.of("sample", ActorRoleType.USER));
+    }
+
+    @AfterEach
+    public void after() {
+        ActorSession.unbind();
+        tester.close();
+    }
+
+    private AuditWriter writer() {
+        var persister = AuditPersister.of(tester.rep(), tester.txm());
+        return new AuditWriter(persister, tester.dh(), tester.registry());
+    }
+
+    @Test
+    public void audit() {
+        try (var writer = writer()) {
+            var handler = AuditHandler.of(msg, writer);
+            assertEquals("ok", handler.audit("asset", "withdraw", List.of("acc1"), () -> "ok"));
+            handler.audit("asset", "closingCashOut", () -> true);
+            handler.audit("it's {0}", List.of("undefined"), () -> true);
+            handler.audit("no arguments '{0}'", () -> true);
+            assertThrows(ValidationException.class, () -> handler.audit("asset", "withdraw", List.of("acc2"), () -> {
+                throw new ValidationException("error");
+            }));
+            // The same message in the second call comes from the kept template.
+            handler.audit("asset", "withdraw", List.of("acc3"), () -> true);
+        }
+        List<AuditActor> actors = tester.tx(rep -> {
+            return rep.tmpl().find("FROM AuditActor aa ORDER BY aa.id");
+        });
+        List<String> expected = List.of(
+                message("audit.asset.withdraw", "acc1"),
+                message("audit.asset.closingCashOut"),
+                msg.getMessage("audit.default.it's {0}", new Object[] { "undefined" }, "it's {0}", Locale.getDefault()),
+                msg.getMessage("audit.default.no arguments '{0}'", null, "no arguments '{0}'", Locale.getDefault()),
+                message("audit.asset.withdraw", "acc2"),
+                message("audit.asset.withdraw", "acc3"));
+        assertEquals(expected, actors.stream().map(AuditActor::getMessage).toList());
+        assertEquals("Make a transfer withdrawal request. [acc1]", expected.get(0));
+        assertEquals("its {0}", expected.get(2)); // quoted by MessageFormat
+        assertEquals(ActionStatusType.CANCELLED, actors.get(4).getStatusType());
+    }
+
+    private String message(String key, Object... args) {
+        return msg.getMessage(key, args, Locale.getDefault());
+    }
+
+    /**
+     * Measures the time the audit wrapper takes around a process doing nothing.
+     * The audit loggers are turned off and the writer drops nearly every record,
+     * so that neither the console nor the database is measured.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkAudit() {
+        var logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("Audit");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        var persister = AuditPersister.of(tester.rep(), tester.txm());
+        try (var writer = new AuditWriter(persister, tester.dh(), tester.registry(),
+                1, 100, Overflow.DROP, Duration.ZERO, null)) {
+            writer.afterPropertiesSet();
+            var handler = AuditHandler.of(msg, writer);
+            List<Object> args = List.of("acc1");
+            int ops = 200_000;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < ops; i++) {
+                    handler.audit("asset", "withdraw", args, () -> true);
+                }
+                long defined = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < ops; i++) {
+                    handler.audit("noop", () -> true);
+                }
+                long undefined = System.nanoTime() - start;
+                log.info(String.format("Audited a no-op process. [defined message: %.0f ns/op, undefined message: %.0f ns/op]",
+                        defined / (double) ops, undefined / (double) ops));
+            }
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+}
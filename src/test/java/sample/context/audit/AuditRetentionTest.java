@@ -0,0 +1,100 @@
+package sample.context.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Slice;
+
+import sample.context.actor.Actor;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.audit.AuditActor.FindAuditActor;
+import sample.context.audit.AuditActor.RegAuditActor;
+import sample.context.audit.AuditEvent.FindAuditEvent;
+import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.orm.Keyset;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+public class AuditRetentionTest {
+    private DomainTester tester;
+    private AuditRetention retention;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(AuditActor.class).build();
+        retention = AuditRetention.of(tester.rep(), tester.txm());
+        var props = tester.dh().props().getAudit();
+        props.setPurgeChunkSize(3);
+        props.setPurgeInterval(Duration.ZERO);
+        // 10 logs a day from 9 days ago to today
+        LocalDateTime today = tester.time().day().atStartOfDay();
+        tester.tx(rep -> {
+            rep.saveAll(IntStream.range(0, 100).mapToObj(i -> RegAuditActor.of("message" + i)
+                    .create(Actor.of("sample", ActorRoleType.USER), today.minusDays(i / 10).plusHours(i % 10)))
+                    .toList());
+            rep.saveAll(IntStream.range(0, 100).mapToObj(i -> RegAuditEvent.of("message" + i)
+                    .create(today.minusDays(i / 10).plusHours(i % 10)))
+                    .toList());
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    @Test
+    public void purge() {
+        LocalDate day = tester.time().day();
+        assertEquals(0, retention.purge(day.minusDays(20)));
+        // in chunks of 3 logs
+        assertEquals(40 + 40, retention.purge(day.minusDays(5)));
+        assertEquals(60, count("AuditActor"));
+        assertEquals(60, count("AuditEvent"));
+        List<Keyset> keys = tester.tx(rep -> {
+            return AuditActor.purge(rep, day.minusDays(5), null, 10);
+        });
+        assertTrue(keys.isEmpty());
+    }
+
+    @Test
+    public void retain() {
+        assertEquals(0, retention.retain());
+        assertEquals(100, count("AuditActor"));
+
+        tester.dh().props().getAudit().setRetention(Duration.ofDays(3));
+        // The expired logs awaiting the purge are not searched. (today and 3 days before are kept)
+        Slice<AuditActor> actors = tester.tx(rep -> {
+            return AuditActor.find(rep, new FindAuditActor(null, null, null, Set.of(ActorRoleType.USER),
+                    null, null, null, null, null, null, null));
+        });
+        assertEquals(40, actors.getNumberOfElements());
+        Slice<AuditEvent> events = tester.tx(rep -> {
+            return AuditEvent.find(rep, new FindAuditEvent(null, null, null, null, null,
+                    null, null, null, null));
+        });
+        assertEquals(40, events.getNumberOfElements());
+
+        assertEquals(60 + 60, retention.retain());
+        assertEquals(40, count("AuditActor"));
+        assertEquals(40, count("AuditEvent"));
+    }
+
+    private long count(String entity) {
+        Long count = tester.tx(rep -> {
+            return rep.tmpl().load("SELECT COUNT(*) FROM " + entity);
+        });
+        return count;
+    }
+
+}
@@ -0,0 +1,226 @@
+package sample.context.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.audit.AuditActor.RegAuditActor;
+import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.audit.AuditHandler.AuditPersister;
+import sample.context.audit.AuditWriter.Overflow;
+import sample.context.audit.AuditWriter.Ticket;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+@Slf4j
+public class AuditWriterTest {
+    private DomainTester tester;
+    private AuditPersister persister;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(AuditActor.class).build();
+        persister = AuditPersister.of(tester.rep(), tester.txm());
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    private AuditWriter async(int queueCapacity, Overflow overflow) {
+        return async(queueCapacity, overflow, null);
+    }
+
+    private AuditWriter async(int queueCapacity, Overflow overflow, Duration longRunning) {
+        var writer = new AuditWriter(persister, tester.dh(), tester.registry(),
+                queueCapacity, 100, overflow, Duration.ofMillis(100), longRunning);
+        writer.afterPropertiesSet();
+        return writer;
+    }
+
+    @Test
+    public void writeAsync() {
+        try (var writer = async(1000, Overflow.DROP)) {
+            assertTrue(writer.async());
+            writer.finish(writer.start(RegAuditActor.of("finished")));
+            writer.cancel(writer.start(RegAuditActor.of("cancelled")), "cancel");
+            writer.error(writer.start(RegAuditEvent.of("error")), "error");
+        }
+        List<AuditActor> actors = actors();
+        assertEquals(2, actors.size());
+        assertTrue(actors.stream().anyMatch(
+                v -> v.getMessage().equals("finished") && v.getStatusType() == ActionStatusType.PROCESSED));
+        assertTrue(actors.stream().anyMatch(
+                v -> v.getErrorReason() != null && v.getStatusType() == ActionStatusType.CANCELLED));
+        List<AuditEvent> events = events();
+        assertEquals(1, events.size());
+        assertEquals(ActionStatusType.ERROR, events.get(0).getStatusType());
+        // a start and an end per log
+        assertEquals(6, tester.registry().get("audit.write.lag").timer().count());
+    }
+
+    @Test
+    public void writeLongRunning() throws Exception {
+        try (var writer = async(1000, Overflow.DROP)) {
+            Ticket ticket = writer.start(RegAuditActor.of("running"));
+            // The start is written while the process is still running.
+            for (int i = 0; i < 50 && actors().isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(ActionStatusType.PROCESSING, actors().get(0).getStatusType());
+            writer.finish(ticket);
+        }
+        List<AuditActor> actors = actors();
+        assertEquals(1, actors.size());
+        assertEquals(ActionStatusType.PROCESSED, actors.get(0).getStatusType());
+        assertNotNull(actors.get(0).getEndDate());
+    }
+
+    @Test
+    public void writeOnceWithinThreshold() throws Exception {
+        try (var writer = async(1000, Overflow.DROP, Duration.ofMillis(300))) {
+            Ticket longRunning = writer.start(RegAuditActor.of("long"));
+            for (int i = 0; i < 10; i++) {
+                writer.finish(writer.start(RegAuditActor.of("short" + i)));
+            }
+            // Only the log still running after the threshold has the start written.
+            for (int i = 0; i < 50 && actors().size() < 11; i++) {
+                Thread.sleep(100);
+            }
+            List<AuditActor> actors = actors();
+            assertEquals(11, actors.size());
+            assertEquals(1, actors.stream().filter(v -> v.getStatusType() == ActionStatusType.PROCESSING).count());
+            writer.finish(longRunning);
+            // The held log is written as running when the writer is closed.
+            writer.start(RegAuditActor.of("unfinished"));
+        }
+        List<AuditActor> actors = actors();
+        assertEquals(12, actors.size());
+        assertEquals(ActionStatusType.PROCESSING, actors.get(11).getStatusType());
+        assertEquals(11, actors.stream().filter(v -> v.getStatusType() == ActionStatusType.PROCESSED).count());
+        assertEquals(2, tester.registry().get("audit.running").counter().count());
+    }
+
+    @Test
+    public void dropOverflow() {
+        int count = 1000;
+        try (var writer = async(1, Overflow.DROP)) {
+            for (int i = 0; i < count; i++) {
+                writer.finish(writer.start(RegAuditActor.of("message" + i)));
+            }
+        }
+        double dropped = tester.registry().get("audit.dropped").tag("record", "start").counter().count();
+        assertTrue(0 < dropped);
+        List<AuditActor> actors = actors();
+        assertEquals(count, actors.size() + (int) dropped);
+        // a log whose end was dropped is left PROCESSING.
+        double droppedEnd = tester.registry().get("audit.dropped").tag("record", "end").counter().count();
+        assertEquals((int) droppedEnd,
+                actors.stream().filter(v -> v.getStatusType() == ActionStatusType.PROCESSING).count());
+    }
+
+    @Test
+    public void blockOverflow() {
+        int count = 200;
+        try (var writer = new AuditWriter(persister, tester.dh(), tester.registry(),
+                1, 100, Overflow.BLOCK, null, null)) {
+            writer.afterPropertiesSet();
+            for (int i = 0; i < count; i++) {
+                writer.finish(writer.start(RegAuditActor.of("message" + i)));
+            }
+        }
+        // Without a block timeout, no record is dropped.
+        assertEquals(0, tester.registry().get("audit.dropped").tag("record", "start").counter().count());
+        List<AuditActor> actors = actors();
+        assertEquals(count, actors.size());
+        assertTrue(actors.stream().allMatch(v -> v.getStatusType() == ActionStatusType.PROCESSED));
+    }
+
+    @Test
+    public void writeSync() {
+        try (var writer = new AuditWriter(persister, tester.dh(), tester.registry())) {
+            assertTrue(!writer.async());
+            Ticket ticket = writer.start(RegAuditActor.of("sync"));
+            assertEquals(ActionStatusType.PROCESSING, actors().get(0).getStatusType());
+            writer.finish(ticket);
+            assertEquals(ActionStatusType.PROCESSED, actors().get(0).getStatusType());
+        }
+        // The writer turns synchronous once closed.
+        var writer = async(1000, Overflow.DROP);
+        writer.close();
+        assertTrue(!writer.async());
+        writer.finish(writer.start(RegAuditActor.of("closed")));
+        assertEquals(2, actors().size());
+    }
+
+    @Test
+    public void endAfterClose() {
+        var writer = async(1000, Overflow.BLOCK);
+        Ticket queued = writer.start(RegAuditActor.of("queued"));
+        writer.close();
+        // The end of a log queued before is written in the caller thread.
+        writer.finish(queued);
+        var held = async(1000, Overflow.BLOCK, Duration.ofMinutes(1));
+        Ticket running = held.start(RegAuditActor.of("held"));
+        held.close();
+        held.cancel(running, "cancel");
+        List<AuditActor> actors = actors();
+        assertEquals(2, actors.size());
+        assertEquals(ActionStatusType.PROCESSED, actors.get(0).getStatusType());
+        assertEquals(ActionStatusType.CANCELLED, actors.get(1).getStatusType());
+    }
+
+    private List<AuditActor> actors() {
+        return tester.tx(rep -> {
+            return rep.tmpl().find("FROM AuditActor aa ORDER BY aa.id");
+        });
+    }
+
+    private List<AuditEvent> events() {
+        return tester.tx(rep -> {
+            return rep.tmpl().find("FROM AuditEvent ae ORDER BY ae.id");
+        });
+    }
+
+    /**
+     * Measures the time the audited thread spends on the start and the end of an
+     * audit log, synchronous and asynchronous.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkWrite() {
+        int ops = 5000;
+        for (int round = 0; round < 3; round++) {
+            for (boolean async : List.of(false, true)) {
+                var writer = async
+                        ? async(ops * 2, Overflow.BLOCK)
+                        : new AuditWriter(persister, tester.dh(), tester.registry());
+                var tickets = new ArrayList<Ticket>(ops);
+                long start = System.nanoTime();
+                for (int i = 0; i < ops; i++) {
+                    tickets.add(writer.start(RegAuditActor.of("message" + i)));
+                }
+                tickets.forEach(writer::finish);
+                long elapsed = System.nanoTime() - start;
+                writer.close();
+                log.info(String.format("Wrote audit logs %s. [%.1f us/op in the audited thread, %.0f ms to drain]",
+                        async ? "asynchronously" : "synchronously", elapsed / 1000d / ops,
+                        (System.nanoTime() - start - elapsed) / 1_000_000d));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package sample.context.lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sample.context.InvocationException;
+import sample.context.lock.IdLockHandler.DbIdLockHandler;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.orm.TxTemplate;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+public class DbIdLockHandlerTest {
+    private DomainTester tester;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(IdLock.class).build();
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    @Test
+    public void requireTransaction() {
+        var handler = new DbIdLockHandler(tester.rep());
+        assertThrows(InvocationException.class, () -> handler.call("a", LockType.WRITE, () -> true));
+    }
+
+    @Test
+    public void reentrant() {
+        var handler = new DbIdLockHandler(tester.rep());
+        boolean result = TxTemplate.of(tester.txm()).writeIdLock(handler, "a").tx(() -> {
+            return handler.call("a", LockType.READ, () -> {
+                return handler.call("a", LockType.WRITE, () -> true);
+            });
+        });
+        assertTrue(result);
+        tester.tx(rep -> {
+            assertEquals(1, rep.findAll(IdLock.class).size());
+        });
+    }
+
+    @Test
+    public void registerInTransaction() {
+        var handler = new DbIdLockHandler(tester.rep());
+        assertThrows(IllegalStateException.class, () -> {
+            TxTemplate.of(tester.txm()).writeIdLock(handler, "a").tx(() -> {
+                throw new IllegalStateException();
+            });
+        });
+        // The row registered by the first lock is rolled back with the transaction.
+        tester.tx(rep -> {
+            assertEquals(0, rep.findAll(IdLock.class).size());
+        });
+        TxTemplate.of(tester.txm()).writeIdLock(handler, "a").tx(() -> {
+            handler.call("b", LockType.WRITE, () -> true);
+        });
+        tester.tx(rep -> {
+            assertEquals(2, rep.findAll(IdLock.class).size());
+        });
+    }
+
+    @Test
+    public void lockAcrossNodes() throws Exception {
+        var node1 = new DbIdLockHandler(tester.rep());
+        var node2 = new DbIdLockHandler(tester.rep());
+        tester.tx(rep -> {
+            rep.save(IdLock.of("a"));
+        });
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var first = CompletableFuture.runAsync(() -> {
+            TxTemplate.of(tester.txm()).writeIdLock(node1, "a").tx(() -> {
+                locked.countDown();
+                await(release);
+            });
+        });
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        var second = CompletableFuture.supplyAsync(() -> {
+            return TxTemplate.of(tester.txm()).writeIdLock(node2, "a").tx(() -> true);
+        });
+        Thread.sleep(300);
+        assertFalse(second.isDone());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package sample.context.lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import sample.context.InvocationException;
+import sample.context.lock.IdLockHandler.IdLockHandlerImpl;
+import sample.context.lock.IdLockHandler.IdLockPair;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.lock.IdLockHandler.MonitoredIdLockHandler;
+import sample.context.lock.IdLockHandler.StripedIdLockHandler;
+
+public class IdLockHandlerTest {
+
+    @Test
+    public void evictUnusedLock() {
+        var handler = new IdLockHandlerImpl();
+        handler.call("a", LockType.WRITE, () -> {
+            handler.call("a", LockType.WRITE, () -> {
+                handler.call("b", LockType.READ, () -> {
+                    assertEquals(2, handler.size());
+                });
+            });
+            assertEquals(1, handler.size());
+        });
+        assertEquals(0, handler.size());
+        assertThrows(IllegalMonitorStateException.class, () -> handler.unlock("a"));
+    }
+
+    @Test
+    public void contention() throws Exception {
+        var handler = new IdLockHandlerImpl();
+        assertEquals(8000, increment(handler, 1000));
+        assertEquals(0, handler.size());
+        assertEquals(8000, increment(new StripedIdLockHandler(100), 1000));
+    }
+
+    @Test
+    public void rejectUpgrade() {
+        var handler = new IdLockHandlerImpl();
+        handler.call("a", LockType.READ, () -> {
+            assertThrows(InvocationException.class, () -> handler.call("a", LockType.WRITE, () -> true));
+        });
+        assertEquals(0, handler.size());
+        // Requested together, the same ID is merged into a single write lock.
+        assertTrue(handler.call(List.of(IdLockPair.read("a"), IdLockPair.write("a")), () -> {
+            return 1 == handler.size();
+        }));
+    }
+
+    @Test
+    public void multiIdWithoutDeadlock() throws Exception {
+        var handler = new IdLockHandlerImpl();
+        assertEquals(20 * 1000, transferRandomly(handler, 20, 5000));
+        assertEquals(0, handler.size());
+        assertEquals(20 * 1000, transferRandomly(new StripedIdLockHandler(8), 20, 5000));
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        var handler = new IdLockHandlerImpl(Duration.ofMillis(50));
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = CompletableFuture.runAsync(() -> {
+            handler.call("a", LockType.WRITE, () -> {
+                locked.countDown();
+                await(release);
+            });
+        });
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        var e = assertThrows(IdLockTimeoutException.class, () -> handler.call("a", LockType.READ, () -> true));
+        assertEquals("a", e.getId());
+        // The explicit timeout takes precedence over the default.
+        assertThrows(IdLockTimeoutException.class,
+                () -> handler.call(List.of(IdLockPair.write("b"), IdLockPair.write("a")), Duration.ofMillis(10),
+                        () -> true));
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(0, handler.size());
+        assertTrue(handler.call("a", LockType.WRITE, () -> true));
+    }
+
+    @Test
+    public void monitor() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        var monitor = new IdLockMonitor(registry, Duration.ofMinutes(5));
+        var handler = new MonitoredIdLockHandler(new IdLockHandlerImpl(), monitor);
+        var locked = new CountDownLatch(1);
+        var holder = CompletableFuture.runAsync(() -> {
+            handler.call("hot", LockType.WRITE, () -> {
+                locked.countDown();
+                sleep(50);
+            });
+        });
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        handler.call("hot", LockType.WRITE, () -> true);
+        handler.call("cold", LockType.READ, () -> true);
+        holder.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, registry.get("idlock.hold").tag("type", "write").timer().count());
+        assertEquals(1, registry.get("idlock.wait").tag("type", "read").timer().count());
+        assertEquals(0, registry.get("idlock.queue").tag("type", "write").gauge().value());
+        var top = monitor.top(10);
+        assertEquals(1, top.size());
+        assertEquals("hot", top.get(0).id());
+        assertEquals(1, top.get(0).count());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void optimisticRead() throws Exception {
+        var handler = new IdLockHandlerImpl();
+        var runs = new AtomicInteger();
+        // Runs once without a writer.
+        assertTrue(handler.call("a", LockType.OPTIMISTIC, () -> {
+            runs.incrementAndGet();
+            return 1 == handler.size();
+        }));
+        assertEquals(1, runs.get());
+        assertEquals(0, handler.size());
+        // Runs again under the read lock when a writer intervened.
+        runs.set(0);
+        handler.call("a", LockType.OPTIMISTIC, () -> {
+            if (runs.incrementAndGet() == 1) {
+                CompletableFuture.runAsync(() -> handler.call("a", LockType.WRITE, () -> {
+                })).join();
+            }
+        });
+        assertEquals(2, runs.get());
+        assertEquals(0, handler.size());
+        // Mixed with other types, it is taken as READ.
+        assertEquals(List.of(IdLockPair.read("a")),
+                handler.lockOrder(List.of(IdLockPair.optimistic("a"), IdLockPair.read("a"))));
+    }
+
+    @Test
+    public void optimisticReadHeavy() throws Exception {
+        for (int writePercent : new int[] { 1, 10 }) {
+            assertTrue(readConsistently(new IdLockHandlerImpl(), LockType.OPTIMISTIC, writePercent));
+            assertTrue(readConsistently(new IdLockHandlerImpl(), LockType.READ, writePercent));
+            assertTrue(readConsistently(new StripedIdLockHandler(16), LockType.OPTIMISTIC, writePercent));
+        }
+    }
+
+    /**
+     * Mixes reads and writes on a few accounts and returns whether every read saw
+     * the two halves of a write together.
+     */
+    private boolean readConsistently(IdLockHandler handler, LockType readType, int writePercent)
+            throws Exception {
+        int accounts = 4;
+        long[][] values = new long[accounts][2];
+        var consistent = new AtomicBoolean(true);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 20000; i++) {
+                futures.add(executor.submit(() -> {
+                    var random = ThreadLocalRandom.current();
+                    int account = random.nextInt(accounts);
+                    if (random.nextInt(100) < writePercent) {
+                        handler.call("acc" + account, LockType.WRITE, () -> {
+                            values[account][0]++;
+                            Thread.yield();
+                            values[account][1]++;
+                        });
+                    } else {
+                        boolean v = handler.call("acc" + account, readType, () -> {
+                            long first = values[account][0];
+                            Thread.yield();
+                            return first == values[account][1];
+                        });
+                        if (!v) {
+                            consistent.set(false);
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        }
+        return consistent.get();
+    }
+
+    /** Moves amounts between random accounts and returns the total balance. */
+    private int transferRandomly(IdLockHandler handler, int accounts, int txs) throws Exception {
+        int[] balances = new int[accounts];
+        Arrays.fill(balances, 1000);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < txs; i++) {
+                futures.add(executor.submit(() -> {
+                    var random = ThreadLocalRandom.current();
+                    int from = random.nextInt(accounts);
+                    int to = random.nextInt(accounts);
+                    var pairs = new ArrayList<IdLockPair>();
+                    pairs.add(IdLockPair.write("acc" + to));
+                    pairs.add(IdLockPair.write("acc" + from));
+                    pairs.add(IdLockPair.read("acc" + random.nextInt(accounts)));
+                    Collections.shuffle(pairs);
+                    handler.call(pairs, () -> {
+                        balances[from] -= 1;
+                        Thread.yield();
+                        balances[to] += 1;
+                        return true;
+                    });
+                }));
+            }
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        }
+        return Arrays.stream(balances).sum();
+    }
+
+    private int increment(IdLockHandler handler, int ids) throws Exception {
+        int[] counters = new int[ids];
+        var total = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int t = 0; t < 8; t++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < ids; i++) {
+                        int id = i;
+                        handler.call("acc" + id, LockType.WRITE, () -> {
+                            counters[id]++;
+                        });
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        for (int v : counters) {
+            total.addAndGet(v);
+        }
+        return total.get();
+    }
+
+}
@@ -0,0 +1,103 @@
+package sample.context.lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.context.ValidationException;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.lock.IdShardExecutor.Backpressure;
+
+public class IdShardExecutorTest {
+
+    @Test
+    public void serializePerId() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        try (var shards = new IdShardExecutor(registry, 4, 10000, Backpressure.ABORT, null)) {
+            int[] counters = new int[10];
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < 8000; i++) {
+                int id = i % counters.length;
+                futures.add(shards.submit("acc" + id, () -> {
+                    counters[id]++;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+            for (int v : counters) {
+                assertEquals(800, v);
+            }
+            assertEquals(8000, registry.get("idshard.execute").timer().count());
+        }
+    }
+
+    @Test
+    public void propagateActor() {
+        var actor = Actor.of("sample", ActorRoleType.USER);
+        ActorSession.bind(actor);
+        try (var shards = new IdShardExecutor(new SimpleMeterRegistry(), 2, 10, Backpressure.ABORT, null)) {
+            assertEquals(actor, IdShardExecutor.await(shards.submit("a", () -> ActorSession.actor())));
+            assertThrows(ValidationException.class, () -> IdShardExecutor.await(shards.submit("a", () -> {
+                throw new ValidationException("error");
+            })));
+        } finally {
+            ActorSession.unbind();
+        }
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        try (var shards = new IdShardExecutor(new SimpleMeterRegistry(), 1, 1, Backpressure.BLOCK,
+                Duration.ofMillis(50))) {
+            var release = new CountDownLatch(1);
+            shards.submit("a", () -> await(release));
+            shards.submit("a", () -> {
+            });
+            assertThrows(RejectedExecutionException.class, () -> shards.submit("a", () -> {
+            }));
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void putWaitsForRoom() throws Exception {
+        try (var shards = new IdShardExecutor(new SimpleMeterRegistry(), 1, 1, Backpressure.ABORT, null)) {
+            int[] counter = new int[1];
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(shards.put("a", () -> {
+                    counter[0]++;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+            assertEquals(100, counter[0]);
+        }
+    }
+
+    @Test
+    public void disabled() {
+        var shards = new IdShardExecutor(new SimpleMeterRegistry());
+        var thread = Thread.currentThread();
+        assertTrue(IdShardExecutor.await(shards.submit("a", () -> thread == Thread.currentThread())));
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
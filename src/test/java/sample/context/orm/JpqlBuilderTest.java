@@ -0,0 +1,167 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.audit.AuditActor;
+import sample.context.audit.AuditActor.FindAuditActor;
+import sample.context.audit.AuditEvent;
+import sample.context.audit.AuditEvent.FindAuditEvent;
+import sample.model.DomainTester.DomainTesterBuilder;
+import sample.model.asset.CashInOut;
+import sample.model.asset.CashInOut.FindCashInOut;
+
+@Slf4j
+public class JpqlBuilderTest {
+
+    @Test
+    public void build() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        var jpql = JpqlBuilder.of("SELECT m FROM Sample m", "m.valid=?1", 2, true)
+                .like(List.of("m.name", "m.note"), "abc", OrmMatchMode.ANYWHERE)
+                .equal("m.category", "")
+                .equal("m.category", "x")
+                .in("m.statusType", List.of(ActionStatusType.PROCESSED))
+                .between("m.date", from, null)
+                .condition("(m.a = ? OR m.b = ?)", 1, 2)
+                .orderBy("m.id");
+        assertEquals("SELECT m FROM Sample m WHERE m.valid=?1"
+                + " AND ((m.name LIKE ?2) OR (m.note LIKE ?3)) AND m.category = ?4 AND m.statusType IN ?5"
+                + " AND m.date >= ?6 AND (m.a = ?7 OR m.b = ?8) ORDER BY m.id", jpql.build());
+        assertArrayEquals(new Object[] { true, "%abc%", "%abc%", "x", List.of(ActionStatusType.PROCESSED), from, 1, 2 },
+                jpql.args());
+        // The same shape renders the same JPQL with its own arguments.
+        var other = JpqlBuilder.of("SELECT m FROM Sample m", "m.valid=?1", 2, false)
+                .like(List.of("m.name", "m.note"), "def", OrmMatchMode.ANYWHERE)
+                .equal("m.category", "y")
+                .in("m.statusType", List.of(ActionStatusType.UNPROCESSED))
+                .between("m.date", from.plusDays(1), null)
+                .condition("(m.a = ? OR m.b = ?)", 3, 4)
+                .orderBy("m.id");
+        assertEquals(jpql.build(), other.build());
+        assertEquals("y", other.args()[3]);
+        assertEquals("SELECT m FROM Sample m WHERE m.date BETWEEN ?1 AND ?2 GROUP BY m.date",
+                JpqlBuilder.of("SELECT m FROM Sample m")
+                        .between("m.date", from, from)
+                        .groupBy("m.date")
+                        .build());
+    }
+
+    /**
+     * Measures the time and bytes taken to build the JPQL of the cash in/out and
+     * actor audit searches.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkBuild() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        int ops = 1_000_000;
+        for (int round = 0; round < 3; round++) {
+            for (var name : List.of("CashInOut", "AuditActor")) {
+                Runnable build = name.equals("CashInOut") ? JpqlBuilderTest::cashInOut : JpqlBuilderTest::auditActor;
+                long bytes = threads.getThreadAllocatedBytes(tid);
+                long start = System.nanoTime();
+                for (int i = 0; i < ops; i++) {
+                    build.run();
+                }
+                log.info(String.format("Built JPQL of %s. [%.0f ns/op, %,d bytes/op]", name,
+                        (System.nanoTime() - start) / (double) ops,
+                        (threads.getThreadAllocatedBytes(tid) - bytes) / ops));
+            }
+        }
+    }
+
+    /** The builder of CashInOut.find. */
+    private static Object cashInOut() {
+        var jpql = JpqlBuilder.of("FROM CashInOut cio")
+                .equal("cio.currency", "JPY")
+                .in("cio.statusType", ActionStatusType.UNPROCESSED_TYPES)
+                .between("cio.updateDate", LocalDate.of(2024, 1, 1).atStartOfDay(),
+                        LocalDateTime.of(2024, 1, 31, 23, 59))
+                .orderBy("cio.updateDate DESC");
+        return jpql.build().length() + jpql.args().length;
+    }
+
+    private static final Set<ActorRoleType> RoleTypes = Set.of(ActorRoleType.USER);
+
+    /** The builder of AuditActor.find. */
+    private static Object auditActor() {
+        var jpql = JpqlBuilder.of("SELECT aa FROM AuditActor aa")
+                .like(Arrays.asList("aa.actorId", "aa.source"), "sample", OrmMatchMode.ANYWHERE)
+                .equal("aa.category", "login")
+                .in("aa.roleType", RoleTypes)
+                .equal("aa.statusType", null)
+                .like(Arrays.asList("aa.message", "aa.errorReason"), "", OrmMatchMode.ANYWHERE)
+                .between("aa.startDate", LocalDateTime.of(2024, 1, 1, 0, 0), null)
+                .orderBy("aa.startDate DESC");
+        return jpql.build().length() + jpql.args().length;
+    }
+
+    /**
+     * Runs a mix of admin searches with random optional conditions and reports the
+     * hit ratio of the query plan cache of Hibernate and of the JPQL shapes.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkAdminSearchMix() {
+        var tester = DomainTesterBuilder.from(AuditActor.class, AuditEvent.class, CashInOut.class).build();
+        try {
+            var stats = tester.rep().em().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+            stats.setStatisticsEnabled(true);
+            LocalDateTime now = LocalDateTime.of(2024, 1, 1, 0, 0);
+            int searches = 3000;
+            for (int i = 0; i < searches; i++) {
+                int kind = ThreadLocalRandom.current().nextInt(10);
+                TxTemplate.of(tester.txm()).readOnly().tx(() -> {
+                    var rep = tester.rep();
+                    if (kind < 5) {
+                        AuditActor.find(rep, new FindAuditActor(maybe("sample"), maybe("login"), maybe("error"),
+                                ThreadLocalRandom.current().nextBoolean() ? RoleTypes : Set.of(),
+                                maybe(ActionStatusType.PROCESSED), maybe(now), maybe(now.plusDays(1)),
+                                null, null, maybe(""), maybe(false)));
+                    } else if (kind < 8) {
+                        AuditEvent.find(rep, new FindAuditEvent(maybe("job"), maybe("error"),
+                                maybe(ActionStatusType.ERROR), maybe(now), maybe(now.plusDays(1)),
+                                null, null, maybe(""), maybe(false)));
+                    } else {
+                        CashInOut.find(rep, new FindCashInOut(maybe("JPY"),
+                                maybe(List.of(ActionStatusType.UNPROCESSED)),
+                                now.toLocalDate(), now.toLocalDate().plusDays(1)));
+                    }
+                });
+            }
+            long hits = stats.getQueryPlanCacheHitCount();
+            long misses = stats.getQueryPlanCacheMissCount();
+            var shapes = JpqlBuilder.shapeStats();
+            log.info(String.format("Ran %,d admin searches. [query plan cache: %,d hits, %,d misses, %.1f%%]"
+                    + " [shapes: %,d, %,d hits, %,d misses]", searches, hits, misses, 100d * hits / (hits + misses),
+                    shapes.shapes(), shapes.hits(), shapes.misses()));
+        } finally {
+            tester.close();
+        }
+    }
+
+    /** Returns a random value or null. */
+    private static <T> T maybe(T value) {
+        return ThreadLocalRandom.current().nextBoolean() ? value : null;
+    }
+
+}
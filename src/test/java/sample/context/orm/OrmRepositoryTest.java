@@ -0,0 +1,166 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.annotation.Isolation;
+
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ActionStatusType;
+import sample.context.ValidationException;
+import sample.model.DataFixtures;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+import sample.model.asset.Cashflow;
+
+@Slf4j
+public class OrmRepositoryTest {
+    private DomainTester tester;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(Cashflow.class).build();
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    @Test
+    public void saveAll() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        tester.tx(rep -> {
+            var saved = rep.saveAll(cashflows(120, day));
+            assertEquals(120, saved.size());
+            assertTrue(saved.stream().allMatch(v -> v.getCashflowId() != null));
+            // Flushed entities are detached, so the session stays small.
+            assertFalse(rep.em().contains(saved.get(0)));
+            assertEquals(120, rep.findAll(Cashflow.class).size());
+            assertEquals(120, saved.stream().map(Cashflow::getCashflowId).distinct().count());
+        });
+        tester.tx(rep -> {
+            var list = rep.findAll(Cashflow.class);
+            list.forEach(v -> v.setStatusType(ActionStatusType.PROCESSED));
+            rep.em().clear();
+            rep.updateAll(list);
+            rep.em().clear();
+            assertTrue(rep.findAll(Cashflow.class).stream()
+                    .allMatch(v -> v.getStatusType() == ActionStatusType.PROCESSED));
+        });
+    }
+
+    @Test
+    public void readOnly() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        Long id = tester.tx(rep -> {
+            return rep.save(DataFixtures.cf("acc", "1000", day, day)).getCashflowId();
+        });
+        TxTemplate.of(tester.txm()).readOnly().tx(() -> {
+            var rep = tester.rep();
+            var session = rep.em().unwrap(Session.class);
+            assertTrue(session.isDefaultReadOnly());
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+            var m = rep.load(Cashflow.class, id);
+            assertTrue(session.isReadOnly(m));
+            m.setStatusType(ActionStatusType.PROCESSED);
+        });
+        tester.tx(rep -> {
+            assertEquals(ActionStatusType.UNPROCESSED, rep.load(Cashflow.class, id).getStatusType());
+            assertThrows(ValidationException.class, () -> rep.load(Cashflow.class, -1L));
+            assertTrue(rep.get(Cashflow.class, -1L).isEmpty());
+        });
+        // The connection is prepared for the transaction. (read-only and isolation)
+        int isolation = TxTemplate.of(tester.txm()).isolation(Isolation.SERIALIZABLE).tx(() -> {
+            return tester.rep().em().unwrap(Session.class).doReturningWork(c -> c.getTransactionIsolation());
+        });
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, isolation);
+    }
+
+    /**
+     * Compares the bytes allocated and the time taken to read 1,000 cash flows in
+     * a read-write and in a read-only transaction.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkReadOnly() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        tester.tx(rep -> {
+            rep.saveAll(cashflows(1000, day));
+        });
+        int requests = 500;
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        Runnable readWrite = () -> TxTemplate.of(tester.txm()).tx(() -> tester.rep().findAll(Cashflow.class));
+        Runnable readOnly = () -> TxTemplate.of(tester.txm()).readOnly().tx(() -> tester.rep().findAll(Cashflow.class));
+        for (int i = 0; i < 100; i++) {
+            readWrite.run();
+            readOnly.run();
+        }
+        for (var run : List.of(readWrite, readOnly, readWrite, readOnly)) {
+            long bytes = threads.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                run.run();
+            }
+            log.info(String.format("Read 1,000 cash flows. [%s: %,d bytes, %.2f ms per request]",
+                    run == readOnly ? "read-only" : "read-write",
+                    (threads.getThreadAllocatedBytes(tid) - bytes) / requests,
+                    (System.nanoTime() - start) / 1_000_000d / requests));
+        }
+    }
+
+    /**
+     * Compares the inserts/sec of 100k cash flows written one by one and in JDBC
+     * batches.
+     * <p>
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkSaveAll() {
+        int rows = 100_000;
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        long start = System.nanoTime();
+        tester.tx(rep -> {
+            for (Cashflow cf : cashflows(rows, day)) {
+                rep.save(cf);
+                rep.flush();
+                rep.em().detach(cf);
+            }
+        });
+        double single = rows / ((System.nanoTime() - start) / 1_000_000_000d);
+        start = System.nanoTime();
+        tester.tx(rep -> {
+            rep.saveAll(cashflows(rows, day));
+        });
+        double batch = rows / ((System.nanoTime() - start) / 1_000_000_000d);
+        log.info(String.format("Inserted cash flows. [one by one: %.0f rows/sec, saveAll: %.0f rows/sec]",
+                single, batch));
+    }
+
+    private List<Cashflow> cashflows(int rows, LocalDate day) {
+        return IntStream.range(0, rows).mapToObj(i -> {
+            var cf = DataFixtures.cf("acc" + (i % 100), "1000", day, day);
+            cf.setAmount(BigDecimal.valueOf(i));
+            return cf;
+        }).toList();
+    }
+
+}
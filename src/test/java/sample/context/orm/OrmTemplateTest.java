@@ -0,0 +1,209 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import sample.context.ActionStatusType;
+import sample.context.InvocationException;
+import sample.context.ValidationException;
+import sample.context.audit.AuditEvent;
+import sample.context.audit.AuditEvent.FindAuditEvent;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+@Slf4j
+public class OrmTemplateTest {
+    private DomainTester tester;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(AuditEvent.class).build();
+        // Three events share each start date, so the keyset must break ties by ID.
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+        tester.tx(rep -> {
+            for (int i = 0; i < 10; i++) {
+                var m = new AuditEvent();
+                m.setCategory("sample");
+                m.setMessage("event" + i);
+                m.setStatusType(ActionStatusType.PROCESSED);
+                m.setStartDate(base.plusMinutes(i / 3));
+                rep.save(m);
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    @Test
+    public void findKeyset() {
+        tester.tx(rep -> {
+            var all = rep.tmpl().<AuditEvent>find(
+                    "SELECT ae FROM AuditEvent ae ORDER BY ae.startDate DESC, ae.id DESC");
+            var read = new ArrayList<AuditEvent>();
+            String cursor = "";
+            int pages = 0;
+            do {
+                var jpql = JpqlBuilder.of("SELECT ae FROM AuditEvent ae")
+                        .seek("ae.startDate", "ae.id", true,
+                                Keyset.decode(cursor, LocalDateTime::parse).orElse(null));
+                var slice = rep.tmpl().findKeyset(jpql.build(), 3,
+                        (AuditEvent v) -> new Keyset(v.getStartDate(), v.getId()), jpql.args());
+                read.addAll(slice.getContent());
+                cursor = slice.getNextCursor();
+                assertEquals(cursor != null, slice.hasNext());
+                pages++;
+            } while (cursor != null);
+            assertEquals(4, pages);
+            assertEquals(all, read);
+
+            var first = AuditEvent.find(rep, find("", null));
+            assertEquals(10, first.getNumberOfElements());
+            assertFalse(first.hasNext());
+            assertThrows(ValidationException.class, () -> AuditEvent.find(rep, find("broken", null)));
+        });
+    }
+
+    @Test
+    public void findWithoutCount() {
+        tester.tx(rep -> {
+            var jpql = "SELECT ae FROM AuditEvent ae ORDER BY ae.id";
+            var first = rep.tmpl().findSlice(jpql, PageRequest.of(0, 3));
+            assertTrue(first.hasNext());
+            assertEquals(3, first.getNumberOfElements());
+            var last = rep.tmpl().findSlice(jpql, PageRequest.of(3, 3));
+            assertFalse(last.hasNext());
+            assertEquals(1, last.getNumberOfElements());
+            assertEquals(10, rep.tmpl().find(jpql, PageRequest.of(0, 20)).getTotalElements());
+            assertEquals(10, rep.tmpl().find(jpql, PageRequest.of(1, 3)).getTotalElements());
+            assertFalse(AuditEvent.find(rep, find(null, false)).hasNext());
+        });
+    }
+
+    /**
+     * Streams many rows and checks that the persistence context never holds more
+     * than one fetch of them.
+     * low: The row count is raised with -Dstream.rows (e.g. 5000000), but the
+     * in-memory DB shares the heap of the test, so the full volume with a heap cap
+     * needs a DB outside the JVM.
+     */
+    @Test
+    public void stream() {
+        int rows = Integer.getInteger("stream.rows", 200_000);
+        int fetchSize = 1000;
+        tester.tx(rep -> {
+            rep.tmpl().executeSql("""
+                    INSERT INTO AuditEvent (id, category, message, statusType, startDate)
+                    SELECT X + 100, 'bulk', CONCAT('message', X), 2, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, ?1)
+                    """, rows);
+        });
+        var read = new AtomicLong();
+        var maxManaged = new AtomicLong();
+        var detached = new AtomicLong();
+        TxTemplate.of(tester.txm()).readOnly().tx(() -> {
+            var session = tester.rep().em().unwrap(Session.class);
+            var jpql = "SELECT ae FROM AuditEvent ae WHERE ae.category=?1 ORDER BY ae.id";
+            try (Stream<AuditEvent> stream = tester.rep().tmpl().stream(jpql, fetchSize, "bulk")) {
+                stream.forEach(v -> {
+                    read.incrementAndGet();
+                    maxManaged.accumulateAndGet(session.getStatistics().getEntityCount(), Math::max);
+                    if (!session.contains(v)) {
+                        detached.incrementAndGet();
+                    }
+                });
+            }
+        });
+        assertEquals(rows, read.get());
+        assertTrue(maxManaged.get() <= fetchSize);
+        // The context is cleared before the next row, so no entity is passed on detached.
+        assertEquals(0, detached.get());
+        assertThrows(InvocationException.class, () -> tester.rep().streamAll(AuditEvent.class, fetchSize));
+    }
+
+    @Test
+    public void findAs() {
+        tester.tx(rep -> {
+            var jpql = "FROM AuditEvent ae WHERE ae.category=?1 ORDER BY ae.id";
+            var list = rep.tmpl().findAs(EventRow.class, jpql, "sample");
+            assertEquals(10, list.size());
+            assertEquals("event0", list.get(0).message());
+            assertEquals(ActionStatusType.PROCESSED, list.get(0).statusType());
+            // Records are not managed, so the persistence context stays empty.
+            assertEquals(0, rep.em().unwrap(Session.class).getStatistics().getEntityCount());
+            // A query that already selects is passed through as it is.
+            assertEquals(10, rep.tmpl().findAs(EventRow.class,
+                    "SELECT NEW " + EventRow.class.getName()
+                            + "(ae.id, ae.message, ae.statusType) FROM AuditEvent ae")
+                    .size());
+        });
+    }
+
+    /**
+     * Compares the bytes allocated to read a list into entities and copy them to
+     * DTOs, against reading the list straight into records.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkFindAs() {
+        tester.tx(rep -> {
+            rep.tmpl().executeSql("""
+                    INSERT INTO AuditEvent (id, category, message, statusType, startDate)
+                    SELECT X + 100, 'bulk', CONCAT('message', X), 2, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, 100)
+                    """);
+        });
+        int requests = 2000;
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        Runnable entities = () -> TxTemplate.of(tester.txm()).readOnly().tx(() -> tester.rep().tmpl()
+                .<AuditEvent>find("SELECT ae FROM AuditEvent ae WHERE ae.category=?1 ORDER BY ae.id", "bulk")
+                .stream()
+                .map(v -> new EventRow(v.getId(), v.getMessage(), v.getStatusType()))
+                .toList());
+        Runnable records = () -> TxTemplate.of(tester.txm()).readOnly().tx(() -> tester.rep().tmpl()
+                .findAs(EventRow.class, "FROM AuditEvent ae WHERE ae.category=?1 ORDER BY ae.id", "bulk"));
+        for (int i = 0; i < 200; i++) {
+            entities.run();
+            records.run();
+        }
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < requests; i++) {
+            entities.run();
+        }
+        long entityBytes = (threads.getThreadAllocatedBytes(tid) - before) / requests;
+        before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < requests; i++) {
+            records.run();
+        }
+        long recordBytes = (threads.getThreadAllocatedBytes(tid) - before) / requests;
+        log.info(String.format("Allocated per request of 100 rows. [entity and copy: %,d bytes, findAs: %,d bytes]",
+                entityBytes, recordBytes));
+    }
+
+    public static record EventRow(Long id, String message, ActionStatusType statusType) {
+    }
+
+    private FindAuditEvent find(String cursor, Boolean count) {
+        return new FindAuditEvent("sample", null, null, null, null, null, null, cursor, count);
+    }
+
+}
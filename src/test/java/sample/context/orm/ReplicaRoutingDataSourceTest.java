@@ -0,0 +1,123 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.actor.type.ActorRoleType;
+
+public class ReplicaRoutingDataSourceTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    public void before() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    public void after() {
+        ActorSession.unbind();
+        new JdbcTemplate(primary).execute("DROP TABLE node");
+        new JdbcTemplate(replica).execute("DROP TABLE node");
+    }
+
+    private DataSource database(String name) {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "", "");
+        var jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return ds;
+    }
+
+    @Test
+    public void route() throws Exception {
+        try (var ds = new ReplicaRoutingDataSource(
+                primary, List.of(replica), Duration.ofMillis(300), Duration.ofMinutes(1), registry)) {
+            var txm = new DataSourceTransactionManager(ds);
+            var jdbc = new JdbcTemplate(ds);
+            ActorSession.bind(Actor.of("a", ActorRoleType.USER));
+            assertEquals("replica", TxTemplate.of(txm).readOnly().tx(() -> node(jdbc)));
+            assertEquals("primary", TxTemplate.of(txm).tx(() -> node(jdbc)));
+            // The actor that wrote reads its writes from the primary for a while.
+            assertEquals("primary", TxTemplate.of(txm).readOnly().tx(() -> node(jdbc)));
+            ActorSession.bind(Actor.of("b", ActorRoleType.USER));
+            assertEquals("replica", TxTemplate.of(txm).readOnly().tx(() -> node(jdbc)));
+            Thread.sleep(400);
+            ActorSession.bind(Actor.of("a", ActorRoleType.USER));
+            assertEquals("replica", TxTemplate.of(txm).readOnly().tx(() -> node(jdbc)));
+
+            assertEquals(3, routed("replica"));
+            assertEquals(1, routed("written"));
+        }
+    }
+
+    @Test
+    public void routeWithCredentials() throws Exception {
+        try (var ds = new ReplicaRoutingDataSource(
+                primary, List.of(replica), Duration.ZERO, Duration.ofMinutes(1), registry)) {
+            try (Connection con = ds.getConnection("", "")) {
+                con.setReadOnly(true);
+                assertEquals("replica", node(con));
+            }
+            try (Connection con = ds.getConnection("", "")) {
+                assertEquals("primary", node(con));
+            }
+        }
+    }
+
+    @Test
+    public void failover() {
+        var broken = new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "", "");
+        try (var ds = new ReplicaRoutingDataSource(
+                primary, List.of(broken, replica), Duration.ZERO, Duration.ofMinutes(1), registry)) {
+            var txm = new DataSourceTransactionManager(ds);
+            var jdbc = new JdbcTemplate(ds);
+            for (int i = 0; i < 4; i++) {
+                assertEquals("replica", TxTemplate.of(txm).readOnly().tx(() -> node(jdbc)));
+            }
+            assertEquals(1, registry.get("orm.replica.available").gauge().value());
+        }
+        try (var ds = new ReplicaRoutingDataSource(
+                primary, List.of(broken), Duration.ZERO, Duration.ofMinutes(1), registry)) {
+            var txm = new DataSourceTransactionManager(ds);
+            assertEquals("primary", TxTemplate.of(txm).readOnly().tx(() -> node(new JdbcTemplate(ds))));
+            assertEquals(1, routed("unavailable"));
+        }
+    }
+
+    private String node(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private String node(Connection con) throws SQLException {
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private double routed(String route) {
+        return registry.get("orm.replica.route").tag("route", route).counter().count();
+    }
+
+}
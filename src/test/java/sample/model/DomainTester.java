@@ -23,6 +23,9 @@ import org.springframework.util.Assert;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import jakarta.persistence.EntityManagerFactory;
 import sample.context.DomainEntity;
 import sample.context.DomainHelper;
@@ -37,6 +40,7 @@ public class DomainTester {
     private final OrmRepository rep;
     private final PlatformTransactionManager txm;
     private final MockDomainHelper dh = new MockDomainHelper();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
 
     public DomainTester(Collection<Class<?>> targetEntities) {
         this.emf = setupEntityManagerFactory(targetEntities);
@@ -51,8 +55,14 @@ public class DomainTester {
     private EntityManagerFactory setupEntityManagerFactory(
             Collection<Class<?>> targetEntities) {
         DataSource ds = EntityTestFactory.dataSource();
-        Map<String, String> props = new HashMap<>();
+        Map<String, Object> props = new HashMap<>();
         props.put(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        props.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo");
+        props.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        props.put(AvailableSettings.USE_QUERY_CACHE, true);
+        props.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        props.put("hibernate.javax.cache.uri", "ehcache.xml");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "fail");
         Builder builder = new EntityManagerFactoryBuilder(new HibernateJpaVendorAdapter(), props, null)
                 .dataSource(ds)
                 .jta(false);
@@ -78,6 +88,18 @@ public class DomainTester {
         return this.dh.time();
     }
 
+    public OrmRepository rep() {
+        return this.rep;
+    }
+
+    public PlatformTransactionManager txm() {
+        return this.txm;
+    }
+
+    public MeterRegistry registry() {
+        return this.registry;
+    }
+
     public <T> T tx(Function<OrmRepository, T> fn) {
         return TxTemplate.of(txm).tx(() -> {
             T ret = fn.apply(rep);
@@ -0,0 +1,243 @@
+package sample.model;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import sample.context.ActionStatusType;
+import sample.context.actor.Actor;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.audit.AuditActor;
+import sample.context.audit.AuditActor.FindAuditActor;
+import sample.context.audit.AuditActor.RegAuditActor;
+import sample.context.audit.AuditEvent;
+import sample.context.audit.AuditEvent.FindAuditEvent;
+import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.orm.OrmRepository;
+import sample.model.DomainTester.DomainTesterBuilder;
+import sample.model.account.Account;
+import sample.model.account.FiAccount;
+import sample.model.asset.Asset;
+import sample.model.asset.CashBalance;
+import sample.model.asset.CashInOut;
+import sample.model.asset.CashInOut.FindCashInOut;
+import sample.model.asset.Cashflow;
+import sample.model.master.Holiday;
+import sample.model.master.Holiday.FindHoliday;
+import sample.model.master.Login;
+import sample.model.master.SelfFiAccount;
+import sample.model.master.StaffAuthority;
+import sample.model.support.HolidayAccessorMock;
+import sample.usecase.admin.job.JobInstance;
+import sample.usecase.admin.job.JobPartition;
+import sample.usecase.admin.job.JobStep;
+
+/**
+ * Verifies that the finder queries are planned on an index.
+ * <p>
+ * The queries issued by the finders are taken from the query statistics of H2
+ * and explained against seeded tables. A plan that reads a whole table or a
+ * whole index fails the test, so add an index to the entity (and the DDL) along
+ * with a new finder.
+ * low: Searches by keyword only, such as Staff.find, scan by nature and are not
+ * run here. The keywords of the audit logs are served by trigram indexes on
+ * PostgreSQL only, which H2 does not have.
+ */
+public class QueryPlanTest {
+    private static final int Rows = 1000;
+    /** A table or an index read without a condition. */
+    private static final Pattern FullScan = Pattern.compile("/\\* PUBLIC\\.[\\w.]+ \\*/");
+
+    private DomainTester tester;
+    private BusinessDayHandler businessDay;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(
+                Account.class, CashBalance.class, Holiday.class, AuditActor.class, JobInstance.class).build();
+        businessDay = BusinessDayHandler.of(tester.time(), new HolidayAccessorMock());
+        seed();
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    private void seed() {
+        LocalDate day = tester.time().day();
+        LocalDateTime now = tester.time().date();
+        var encoder = new BCryptPasswordEncoder(4);
+        tester.tx(rep -> {
+            rep.saveAll(rows(i -> DataFixtures.account(accountId(i))));
+            rep.saveAll(rows(i -> DataFixtures.fiAcc(accountId(i), "CashOut", "JPY")));
+            rep.saveAll(rows(i -> DataFixtures.login(encoder, accountId(i), ActorRoleType.USER)));
+            rep.saveAll(rows(i -> DataFixtures.selfFiAcc("category" + i, "JPY")));
+            rep.saveAll(rows(i -> DataFixtures.staffAuth("staff" + i, "ROLE_ADMIN").get(0)));
+            rep.saveAll(rows(i -> {
+                var m = DataFixtures.holiday("2024-01-01");
+                m.setDay(day.minusDays(i));
+                return m;
+            }));
+            rep.saveAll(rows(i -> DataFixtures.cb(accountId(i), day.minusDays(i % 10), "JPY", "10000")));
+            rep.saveAll(rows(i -> DataFixtures.cf(accountId(i), "1000", day, day.plusDays(i % 30))));
+            rep.saveAll(rows(i -> DataFixtures.cio(rep.dh().uid(), businessDay, accountId(i), "100", i % 2 == 0)));
+            rep.saveAll(rows(i -> RegAuditActor.of("message" + i)
+                    .create(Actor.of(accountId(i), ActorRoleType.USER), now.minusMinutes(i))));
+            rep.saveAll(rows(i -> RegAuditEvent.of("message" + i).create(now.minusMinutes(i))));
+            var instances = rep.saveAll(rows(i -> {
+                var m = new JobInstance();
+                m.setJobName("job" + i % 10);
+                m.setJobKey("key" + i);
+                m.setStatusType(ActionStatusType.PROCESSED);
+                m.setStartDate(now);
+                return m;
+            }));
+            rep.saveAll(instances.stream().map(v -> {
+                var m = new JobStep();
+                m.setInstanceId(v.getId());
+                m.setStepName("step");
+                m.setStatusType(ActionStatusType.PROCESSED);
+                m.setUpdateDate(now);
+                return m;
+            }).toList());
+            rep.saveAll(rows(i -> {
+                var m = new JobPartition();
+                m.setJobName("job" + i % 10);
+                m.setJobKey("key" + i / 10);
+                m.setPartitionNo(i % 10);
+                m.setStatusType(ActionStatusType.PROCESSED);
+                m.setUpdateDate(now);
+                return m;
+            }));
+        });
+        execute("ANALYZE");
+    }
+
+    private static <T> List<T> rows(IntFunction<T> fn) {
+        return IntStream.range(0, Rows).mapToObj(fn).toList();
+    }
+
+    private static String accountId(int i) {
+        return String.format("acc%04d", i);
+    }
+
+    @Test
+    public void finders() {
+        LocalDate day = tester.time().day();
+        LocalDateTime now = tester.time().date();
+        String accountId = accountId(1);
+        execute("SET QUERY_STATISTICS TRUE");
+        tester.tx(rep -> {
+            // account
+            FiAccount.load(rep, accountId, "CashOut", "JPY");
+            Login.getByLoginId(rep, ActorRoleType.USER, accountId);
+            Login.getByLoginId(rep, Set.of(ActorRoleType.USER, ActorRoleType.ADMINISTRATOR), accountId);
+            // master
+            SelfFiAccount.load(rep, "category1", "JPY");
+            StaffAuthority.find(rep, "staff1");
+            Holiday.get(rep, day);
+            Holiday.find(rep, new FindHoliday(null, day.getYear()));
+            // asset
+            CashBalance.getOrNew(rep, accountId, "JPY");
+            Cashflow.findUnrealize(rep, accountId, "JPY", day);
+            Cashflow.findDoRealize(rep, day);
+            Cashflow.findDoRealize(rep, day, List.of(accountId));
+            Cashflow.findDoRealizeAccountIds(rep, day);
+            Cashflow.findDoRealizeAccountIds(rep, day, accountId(0), accountId(10), null, 10);
+            CashInOut.find(rep, new FindCashInOut("JPY", ActionStatusType.UNPROCESSED_TYPES, day, day));
+            CashInOut.findUnprocessed(rep);
+            CashInOut.findUnprocessed(rep, List.of("C0000000001"));
+            CashInOut.findUnprocessed(rep, accountId, "JPY", true);
+            CashInOut.findUnprocessedKeys(rep, day, accountId(0), accountId(10), null, 10);
+            CashInOut.findUnprocessedAccountIds(rep, day);
+            Asset.of(accountId).withdrawable(rep, "JPY", day);
+            // audit
+            AuditActor.find(rep, new FindAuditActor(null, null, null, Set.of(ActorRoleType.USER),
+                    null, now.minusHours(1), now, null, null, "", null));
+            AuditActor.find(rep, new FindAuditActor(null, null, null, Set.of(ActorRoleType.USER),
+                    null, now.minusHours(1), now, null, null, null, null));
+            AuditEvent.find(rep, new FindAuditEvent(null, null, null, now.minusHours(1), now,
+                    null, null, "", null));
+            AuditEvent.find(rep, new FindAuditEvent(null, null, null, now.minusHours(1), now,
+                    null, null, null, null));
+            // job
+            JobInstance.getLatest(rep, "job1", "key1");
+            JobInstance.findRecent(rep, "job1", 10);
+            JobStep.get(rep, 1L, "step");
+            JobStep.find(rep, 1L);
+            JobPartition.find(rep, "job1", "key1");
+            JobPartition.findClaimable(rep, "job1", "key1", now);
+        });
+        List<String> queries = new ArrayList<>();
+        tester.tx(rep -> {
+            work(rep, con -> {
+                try (var rs = con.createStatement().executeQuery(
+                        "SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS")) {
+                    while (rs.next()) {
+                        String sql = rs.getString(1);
+                        if (sql.startsWith("select ")) {
+                            queries.add(sql);
+                        }
+                    }
+                }
+            });
+        });
+        execute("SET QUERY_STATISTICS FALSE");
+        assertFalse(queries.isEmpty());
+        tester.tx(rep -> {
+            for (String sql : queries) {
+                String plan = explain(rep, sql);
+                assertTrue(!FullScan.matcher(plan).find(), "The query scans a whole table.\n" + plan);
+            }
+        });
+    }
+
+    private String explain(OrmRepository rep, String sql) {
+        var plan = new StringBuilder();
+        work(rep, con -> {
+            try (var ps = con.prepareStatement("EXPLAIN " + sql)) {
+                int count = ps.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= count; i++) {
+                    ps.setObject(i, null);
+                }
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                }
+            }
+        });
+        return plan.toString();
+    }
+
+    private void execute(String sql) {
+        tester.tx(rep -> {
+            work(rep, con -> {
+                try (var st = con.createStatement()) {
+                    st.execute(sql);
+                }
+            });
+        });
+    }
+
+    private void work(OrmRepository rep, Work work) {
+        rep.em().unwrap(Session.class).doWork(work);
+    }
+
+}
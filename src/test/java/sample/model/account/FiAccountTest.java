@@ -2,10 +2,13 @@ package sample.model.account;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.util.List;
 
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -52,6 +55,34 @@ public class FiAccountTest {
         });
     }
 
+    @Test
+    public void loadCached() {
+        var stats = tester.rep().em().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+        tester.tx(rep -> {
+            FiAccount.load(rep, "normal", "sample", "JPY");
+        });
+        assertEquals(0, stats.getQueryCacheHitCount());
+        // A new session reads the result from the cache without SQL.
+        long statements = stats.getPrepareStatementCount();
+        tester.tx(rep -> {
+            assertEquals("sample-JPY", FiAccount.load(rep, "normal", "sample", "JPY").getFiCode());
+        });
+        assertEquals(1, stats.getQueryCacheHitCount());
+        assertEquals(statements, stats.getPrepareStatementCount());
+        // An update invalidates the cached result.
+        tester.tx(rep -> {
+            var m = FiAccount.load(rep, "normal", "sample", "JPY");
+            m.setCurrency("USD");
+            rep.update(m);
+        });
+        tester.tx(rep -> {
+            assertEquals("USD", FiAccount.load(rep, "normal", "sample", "USD").getCurrency());
+            assertThrows(ValidationException.class, () -> FiAccount.load(rep, "normal", "sample", "JPY"));
+        });
+        stats.setStatisticsEnabled(false);
+    }
+
     @Test
     public void checkAdHocJoin() {
         tester.tx(rep -> {
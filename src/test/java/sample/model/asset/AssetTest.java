@@ -1,15 +1,18 @@
 package sample.model.asset;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import sample.context.ActionStatusType;
 import sample.model.BusinessDayHandler;
 import sample.model.DataFixtures;
 import sample.model.DomainTester;
@@ -54,4 +57,44 @@ public class AssetTest {
         });
     }
 
+    @Test
+    public void withdrawable() {
+        var stats = tester.rep().em().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        tester.tx(rep -> {
+            var asset = Asset.of("test");
+            assertEquals(new BigDecimal("0"), asset.withdrawable(rep, "JPY", LocalDate.of(2014, 11, 21)));
+            // The latest balance is carried forward.
+            rep.save(DataFixtures.cb("test", LocalDate.of(2014, 11, 17), "JPY", "9000"));
+            rep.save(DataFixtures.cb("test", LocalDate.of(2014, 11, 18), "JPY", "10000"));
+            rep.save(DataFixtures.cb("test", LocalDate.of(2014, 11, 18), "USD", "300.55"));
+            rep.save(DataFixtures.cf("test", "1000", LocalDate.of(2014, 11, 18), LocalDate.of(2014, 11, 20)));
+            rep.save(DataFixtures.cf("test", "-2000", LocalDate.of(2014, 11, 19), LocalDate.of(2014, 11, 21)));
+            rep.save(DataFixtures.cf("test", "500", LocalDate.of(2014, 11, 19), LocalDate.of(2014, 11, 22)));
+            var processed = DataFixtures.cf("test", "700", LocalDate.of(2014, 11, 17), LocalDate.of(2014, 11, 18));
+            processed.setStatusType(ActionStatusType.PROCESSED);
+            rep.save(processed);
+            rep.save(DataFixtures.cio(rep.dh().uid(), businessDay, "test", "8000", true));
+            rep.save(DataFixtures.cio(rep.dh().uid(), businessDay, "test", "3000", false));
+            rep.em().flush();
+
+            stats.setStatisticsEnabled(true);
+            stats.clear();
+            // 10000 + (1000 - 2000) - 8000 = 1000
+            assertEquals(new BigDecimal("1000"), asset.withdrawable(rep, "JPY", LocalDate.of(2014, 11, 21)));
+            assertEquals(1, stats.getPrepareStatementCount());
+            assertEquals(new BigDecimal("1500"), asset.withdrawable(rep, "JPY", LocalDate.of(2014, 11, 22)));
+            assertEquals(new BigDecimal("300.55"), asset.withdrawable(rep, "USD", LocalDate.of(2014, 11, 21)));
+            // No balance is saved by the calculation.
+            assertEquals(0, stats.getEntityInsertCount());
+            stats.setStatisticsEnabled(false);
+
+            // A withdrawal request being processed is still bound.
+            var processing = DataFixtures.cio(rep.dh().uid(), businessDay, "test", "400", true);
+            processing.setStatusType(ActionStatusType.PROCESSING);
+            rep.save(processing);
+            rep.em().flush();
+            assertEquals(new BigDecimal("600"), asset.withdrawable(rep, "JPY", LocalDate.of(2014, 11, 21)));
+        });
+    }
+
 }
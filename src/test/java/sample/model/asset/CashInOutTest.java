@@ -75,9 +75,17 @@ public class CashInOutTest {
                     CashInOut.find(rep, findParam(baseDay, basePlus1Day, ActionStatusType.PROCESSED)).isEmpty());
             assertTrue(
                     CashInOut.find(rep, findParam(basePlus1Day, basePlus2Day, ActionStatusType.UNPROCESSED)).isEmpty());
+            var rows = CashInOut.find(rep, findParam(baseDay, basePlus1Day), CashOutRow.class);
+            assertEquals(1, rows.size());
+            assertEquals(accId, rows.get(0).accountId());
+            assertEquals(0, new BigDecimal("300").compareTo(rows.get(0).absAmount()));
+            assertEquals(1, CashInOut.findUnprocessed(rep, accId, CashOutRow.class).size());
         });
     }
 
+    public static record CashOutRow(String accountId, BigDecimal absAmount, ActionStatusType statusType) {
+    }
+
     private FindCashInOut findParam(LocalDate fromDay, LocalDate toDay, ActionStatusType... statusTypes) {
         return FindCashInOut.builder()
                 .currency(ccy)
@@ -224,4 +232,28 @@ public class CashInOutTest {
         });
     }
 
+    @Test
+    public void findUnprocessedKeys() {
+        LocalDate basePlus1Day = businessDay.day(1);
+        tester.tx(rep -> {
+            for (int i = 0; i < 5; i++) {
+                rep.save(DataFixtures.cio(rep.dh().uid(), businessDay, accId, "10", true));
+            }
+            CashInOut cancelled = rep.save(DataFixtures.cio(rep.dh().uid(), businessDay, accId, "10", true));
+            cancelled.setStatusType(ActionStatusType.CANCELLED);
+            rep.update(cancelled);
+
+            var first = CashInOut.findUnprocessedKeys(rep, basePlus1Day, null, 3);
+            assertEquals(3, first.size());
+            var second = CashInOut.findUnprocessedKeys(rep, basePlus1Day, first.get(2).cashInOutId(), 3);
+            assertEquals(2, second.size());
+            assertTrue(first.get(2).cashInOutId().compareTo(second.get(0).cashInOutId()) < 0);
+            assertEquals(accId, second.get(0).accountId());
+            assertTrue(CashInOut.findUnprocessedKeys(rep, basePlus1Day, second.get(1).cashInOutId(), 3).isEmpty());
+
+            var ids = List.of(first.get(0).cashInOutId(), cancelled.getCashInOutId());
+            assertEquals(1, CashInOut.findUnprocessed(rep, ids).size());
+        });
+    }
+
 }
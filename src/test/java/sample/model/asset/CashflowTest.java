@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -105,4 +106,43 @@ public class CashflowTest {
         });
     }
 
+    @Test
+    public void realizeAll() {
+        LocalDate baseDay = businessDay.day();
+        LocalDate baseMinus1Day = businessDay.day(-1);
+        LocalDate basePlus1Day = businessDay.day(1);
+        tester.tx(rep -> {
+            CashBalance.getOrNew(rep, "test1", "JPY");
+            var cfs = List.of(
+                    rep.save(DataFixtures.cf("test1", "1000", baseMinus1Day, baseDay)),
+                    rep.save(DataFixtures.cf("test1", "-300", baseMinus1Day, baseDay)),
+                    rep.save(DataFixtures.cf("test2", "500", baseMinus1Day, baseDay)));
+            Cashflow cfFuture = rep.save(DataFixtures.cf("test1", "1000", baseDay, basePlus1Day));
+            rep.flushAndClear();
+
+            // Unarrived delivery date in the chunk [Exception].
+            try {
+                Cashflow.realizeAll(rep, List.of(cfs.get(0), cfFuture));
+                fail();
+            } catch (ValidationException e) {
+                assertEquals(AssetErrorKeys.RealizeDay, e.getMessage());
+            }
+
+            assertEquals(3, Cashflow.realizeAll(rep, cfs));
+            rep.flushAndClear();
+            assertEquals(0, new BigDecimal("700").compareTo(CashBalance.getOrNew(rep, "test1", "JPY").getAmount()));
+            assertEquals(0, new BigDecimal("500").compareTo(CashBalance.getOrNew(rep, "test2", "JPY").getAmount()));
+            cfs.forEach(cf -> assertEquals(
+                    ActionStatusType.PROCESSED, Cashflow.load(rep, cf.getCashflowId()).getStatusType()));
+
+            // Already realized by another process [Exception].
+            try {
+                Cashflow.realizeAll(rep, List.of(cfs.get(0)));
+                fail();
+            } catch (ValidationException e) {
+                assertEquals(DomainErrorKeys.StatusType, e.getMessage());
+            }
+        });
+    }
+
 }
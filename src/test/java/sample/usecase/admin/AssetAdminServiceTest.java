@@ -0,0 +1,86 @@
+package sample.usecase.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import sample.context.ActionStatusType;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.actor.type.ActorRoleType;
+import sample.context.audit.AuditActor;
+import sample.context.audit.AuditHandler;
+import sample.context.audit.AuditHandler.AuditPersister;
+import sample.context.audit.AuditWriter;
+import sample.context.lock.IdLockHandler.IdLockHandlerImpl;
+import sample.context.lock.IdShardExecutor;
+import sample.context.lock.IdShardExecutor.Backpressure;
+import sample.model.DataFixtures;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+import sample.model.asset.Cashflow;
+import sample.usecase.admin.job.JobInstance;
+import sample.usecase.admin.job.JobPartitioner;
+import sample.usecase.admin.job.JobRunner;
+
+public class AssetAdminServiceTest {
+    private DomainTester tester;
+    private AuditWriter writer;
+    private IdShardExecutor shards;
+    private JobPartitioner partitioner;
+    private AssetAdminService service;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(Cashflow.class, JobInstance.class, AuditActor.class).build();
+        var msg = new ResourceBundleMessageSource();
+        msg.setBasenames("messages-validation", "messages");
+        msg.setDefaultEncoding("UTF-8");
+        writer = new AuditWriter(AuditPersister.of(tester.rep(), tester.txm()), tester.dh(), tester.registry());
+        // A single shard whose queue is smaller than a page.
+        shards = new IdShardExecutor(tester.registry(), 1, 2, Backpressure.ABORT, null);
+        partitioner = new JobPartitioner(tester.rep(), tester.txm());
+        service = new AssetAdminService(tester.rep(), tester.txm(), AuditHandler.of(msg, writer),
+                new IdLockHandlerImpl(), shards, JobRunner.of(tester.rep(), tester.txm()), partitioner);
+        ActorSession.bind(Actor.of("sample", ActorRoleType.USER));
+    }
+
+    @AfterEach
+    public void after() {
+        ActorSession.unbind();
+        partitioner.close();
+        shards.close();
+        writer.close();
+        tester.close();
+    }
+
+    @Test
+    public void realizeCashflowPageOverShardQueue() {
+        tester.dh().props().getBatch().setPageSize(10);
+        LocalDate day = tester.time().day();
+        tester.txInitializeData(rep -> {
+            IntStream.range(0, 25).forEach(i -> {
+                String accountId = String.format("acc%02d", i);
+                rep.save(DataFixtures.cb(accountId, day, "JPY", "0"));
+                rep.save(DataFixtures.cf(accountId, "1000", day.minusDays(3), day));
+            });
+        });
+
+        service.realizeCashflow();
+
+        List<Cashflow> cashflows = tester.tx(rep -> {
+            return rep.findAll(Cashflow.class);
+        });
+        assertEquals(25, cashflows.size());
+        assertTrue(cashflows.stream().allMatch(cf -> cf.getStatusType() == ActionStatusType.PROCESSED));
+    }
+
+}
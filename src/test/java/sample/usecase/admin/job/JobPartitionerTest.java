@@ -0,0 +1,129 @@
+package sample.usecase.admin.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sample.context.ActionStatusType;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+public class JobPartitionerTest {
+    private DomainTester tester;
+    private JobPartitioner node1;
+    private JobPartitioner node2;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(JobPartition.class).build();
+        node1 = new JobPartitioner(tester.rep(), tester.txm());
+        node2 = new JobPartitioner(tester.rep(), tester.txm());
+    }
+
+    @AfterEach
+    public void after() {
+        node1.close();
+        node2.close();
+        tester.close();
+    }
+
+    @Test
+    public void boundaries() {
+        var keys = IntStream.range(0, 10).mapToObj(i -> "k" + i).toList();
+        assertEquals(List.of("k2", "k5", "k7"), JobPartitioner.boundaries(keys, 4));
+        assertEquals(List.of(), JobPartitioner.boundaries(keys, 1));
+        assertEquals(List.of("k1"), JobPartitioner.boundaries(List.of("k0", "k1"), 4));
+        assertEquals(List.of(), JobPartitioner.boundaries(List.of(), 4));
+    }
+
+    @Test
+    public void shareAmongNodes() throws Exception {
+        var keys = IntStream.range(0, 40).mapToObj(i -> String.format("acc%02d", i)).toList();
+        var done = new CopyOnWriteArrayList<String>();
+        var owners = new CopyOnWriteArrayList<String>();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (JobPartitioner node : List.of(node1, node2)) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                node.run("sample", "20240101", () -> JobPartitioner.boundaries(keys, 8), part -> {
+                    owners.add(node.node());
+                    keys.stream()
+                            .filter(v -> part.rangeFrom() == null || part.rangeFrom().compareTo(v) <= 0)
+                            .filter(v -> part.rangeTo() == null || v.compareTo(part.rangeTo()) < 0)
+                            .forEach(v -> {
+                                done.add(v);
+                                part.checkpoint(v, 1, 0);
+                            });
+                });
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+
+        // Every key is processed exactly once.
+        assertEquals(keys.size(), done.size());
+        assertEquals(new HashSet<>(keys), new HashSet<>(done));
+        var partitions = node1.find("sample", "20240101");
+        assertEquals(8, partitions.size());
+        assertEquals(8, owners.size());
+        partitions.forEach(v -> {
+            assertEquals(ActionStatusType.PROCESSED, v.getStatusType());
+            assertEquals(5, v.getProcessed());
+        });
+        // A completed job is not run again.
+        node2.run("sample", "20240101", () -> List.of(), part -> done.add("again"));
+        assertEquals(keys.size(), done.size());
+    }
+
+    @Test
+    public void reclaimExpiredLease() throws Exception {
+        var keys = List.of("a", "b", "c", "d", "e");
+        // node1 claims the partition, commits up to "b" and stops responding.
+        tester.tx(rep -> {
+            JobPartition.register(rep, "sample", "20240101", List.of());
+        });
+        Long id = node1.claim("sample", "20240101", Duration.ofMillis(200), new HashSet<>()).get().getId();
+        tester.tx(rep -> {
+            LocalDateTime now = LocalDateTime.now();
+            assertTrue(JobPartition.checkpoint(rep, id, node1.node(), "b", 2, 0, now, now.plusNanos(200_000_000)));
+        });
+
+        // The lease is still held.
+        var done = new ArrayList<String>();
+        node2.run("sample", "20240101", () -> List.of(), part -> done.add("early"));
+        assertEquals(List.of(), done);
+
+        // After the lease expired, node2 continues after the last checkpoint.
+        Thread.sleep(300);
+        node2.run("sample", "20240101", () -> List.of(), part -> {
+            keys.stream().filter(v -> part.lastKey().compareTo(v) < 0).forEach(v -> {
+                done.add(v);
+                part.checkpoint(v, 1, 0);
+            });
+        });
+        assertEquals(List.of("c", "d", "e"), done);
+        var partition = node2.find("sample", "20240101").get(0);
+        assertEquals(ActionStatusType.PROCESSED, partition.getStatusType());
+        assertEquals(node2.node(), partition.getOwner());
+        assertEquals(5, partition.getProcessed());
+
+        // node1 can no longer record its progress.
+        tester.tx(rep -> {
+            LocalDateTime now = LocalDateTime.now();
+            assertFalse(JobPartition.checkpoint(rep, id, node1.node(), "c", 1, 0, now, now.plusMinutes(1)));
+        });
+    }
+
+}
@@ -0,0 +1,110 @@
+package sample.usecase.admin.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sample.context.ActionStatusType;
+import sample.context.lock.IdLock;
+import sample.model.DomainTester;
+import sample.model.DomainTester.DomainTesterBuilder;
+
+public class JobRunnerTest {
+    private DomainTester tester;
+    private JobRunner jobs;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTesterBuilder.from(JobInstance.class, JobStep.class, IdLock.class).build();
+        jobs = JobRunner.of(tester.rep(), tester.txm());
+    }
+
+    @AfterEach
+    public void after() {
+        tester.close();
+    }
+
+    @Test
+    public void resume() {
+        var keys = List.of("a", "b", "c", "d");
+        var done = new ArrayList<String>();
+        // Fails after two checkpoints.
+        assertThrows(IllegalStateException.class, () -> jobs.run("sample", "20240101", job -> {
+            job.step("first", step -> step.checkpoint("x", 1, 0));
+            job.step("second", step -> {
+                for (String key : keys) {
+                    if (key.equals("c")) {
+                        throw new IllegalStateException("failed");
+                    }
+                    done.add(key);
+                    step.checkpoint(key, 1, 0);
+                }
+            });
+        }));
+        var failed = jobs.findRecent("sample", 10);
+        assertEquals(1, failed.size());
+        assertEquals(ActionStatusType.ERROR, failed.get(0).instance().getStatusType());
+
+        // The finished step is skipped and the second step continues after "b".
+        var firstRuns = new ArrayList<String>();
+        jobs.run("sample", "20240101", job -> {
+            job.step("first", step -> firstRuns.add("first"));
+            job.step("second", step -> {
+                keys.stream().filter(v -> step.lastKey().compareTo(v) < 0).forEach(key -> {
+                    done.add(key);
+                    step.checkpoint(key, 1, 0);
+                });
+            });
+        });
+        assertEquals(List.of(), firstRuns);
+        assertEquals(keys, done);
+        var resumed = jobs.findRecent("sample", 10);
+        assertEquals(1, resumed.size());
+        assertEquals(ActionStatusType.PROCESSED, resumed.get(0).instance().getStatusType());
+        var second = resumed.get(0).steps().get(1);
+        assertEquals("d", second.getLastKey());
+        assertEquals(4, second.getProcessed());
+
+        // A finished job starts a new run from the beginning.
+        jobs.run("sample", "20240101", job -> {
+            job.step("first", step -> assertNull(step.lastKey()));
+        });
+        assertEquals(2, jobs.findRecent("sample", 10).size());
+    }
+
+    @Test
+    public void runOnce() {
+        var runs = new ArrayList<String>();
+        assertThrows(IllegalStateException.class, () -> jobs.runOnce("sample", "20240101", job -> {
+            job.step("first", step -> {
+                runs.add("failed");
+                // Another node skips the day while it is processing.
+                assertFalse(CompletableFuture.supplyAsync(() -> {
+                    return jobs.runOnce("sample", "20240101", v -> runs.add("other"));
+                }).join());
+                throw new IllegalStateException("failed");
+            });
+        }));
+
+        // The failed run is resumed by the next claim, and a finished day is not run again.
+        assertTrue(jobs.runOnce("sample", "20240101", job -> {
+            job.step("first", step -> runs.add("resumed"));
+        }));
+        assertFalse(jobs.runOnce("sample", "20240101", job -> runs.add("again")));
+        assertEquals(List.of("failed", "resumed"), runs);
+        var finished = jobs.findRecent("sample", 10);
+        assertEquals(1, finished.size());
+        assertEquals(ActionStatusType.PROCESSED, finished.get(0).instance().getStatusType());
+    }
+
+}